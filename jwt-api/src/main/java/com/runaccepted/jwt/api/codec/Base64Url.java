@@ -0,0 +1,87 @@
+package com.runaccepted.jwt.api.codec;
+
+/**
+ * 无填充的base64url编解码，直接读写字符，不产生中间字符串
+ */
+final class Base64Url {
+
+    private static final char[] ENCODE =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+    private static final int[] DECODE = new int[128];
+
+    static {
+        java.util.Arrays.fill(DECODE, -1);
+        for (int i = 0; i < ENCODE.length; i++) {
+            DECODE[ENCODE[i]] = i;
+        }
+    }
+
+    private Base64Url() {
+    }
+
+    /**
+     * 单个字符的6位值，非法字符返回-1
+     */
+    static int value(int c) {
+        return c >= 0 && c < 128 ? DECODE[c] : -1;
+    }
+
+    /**
+     * 字符区间解码后的字节数
+     */
+    static int decodedLength(int chars) {
+        return chars * 3 / 4;
+    }
+
+    /**
+     * 解码 s[from, to) 写入out，返回字节数
+     */
+    static int decode(CharSequence s, int from, int to, byte[] out) {
+        int n = to - from;
+        if (n % 4 == 1) {
+            throw new JwtCodecException("base64url长度错误");
+        }
+        int length = decodedLength(n);
+        if (length > out.length) {
+            throw new JwtCodecException("base64url长度超出");
+        }
+        int o = 0;
+        int bits = 0;
+        int buffer = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            int v = c < 128 ? DECODE[c] : -1;
+            if (v < 0) {
+                throw new JwtCodecException("非法的base64url字符");
+            }
+            buffer = (buffer << 6) | v;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                out[o++] = (byte) (buffer >> bits);
+            }
+        }
+        return o;
+    }
+
+    /**
+     * 编码 b[0, length) 追加到out
+     */
+    static void encode(byte[] b, int length, StringBuilder out) {
+        int i = 0;
+        for (; i + 2 < length; i += 3) {
+            int v = (b[i] & 0xff) << 16 | (b[i + 1] & 0xff) << 8 | (b[i + 2] & 0xff);
+            out.append(ENCODE[v >>> 18]).append(ENCODE[(v >>> 12) & 63])
+                    .append(ENCODE[(v >>> 6) & 63]).append(ENCODE[v & 63]);
+        }
+        int rest = length - i;
+        if (rest == 1) {
+            int v = (b[i] & 0xff) << 16;
+            out.append(ENCODE[v >>> 18]).append(ENCODE[(v >>> 12) & 63]);
+        } else if (rest == 2) {
+            int v = (b[i] & 0xff) << 16 | (b[i + 1] & 0xff) << 8;
+            out.append(ENCODE[v >>> 18]).append(ENCODE[(v >>> 12) & 63]).append(ENCODE[(v >>> 6) & 63]);
+        }
+    }
+}
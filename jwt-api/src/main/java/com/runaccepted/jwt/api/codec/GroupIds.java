@@ -0,0 +1,108 @@
+package com.runaccepted.jwt.api.codec;
+
+import java.security.SecureRandom;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * token的group生成，按时间排序的128位id（与ULID相同的布局），32位小写十六进制
+ *
+ * 高48位为毫秒时间戳，低80位随机；随机数来自每个线程自己的SplittableRandom，
+ * 线程的种子由启动时从SecureRandom取得的根种子按线程依次派生，生成时不争用共享的SecureRandom。
+ * group只作为黑名单的key，不承担保密作用，token本身由签名保护
+ */
+public final class GroupIds {
+
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    //小写十六进制字符的值，其他字符为-1
+    private static final byte[] HEX = new byte[128];
+
+    static {
+        java.util.Arrays.fill(HEX, (byte) -1);
+        for (int i = 0; i < DIGITS.length; i++) {
+            HEX[DIGITS[i]] = (byte) i;
+        }
+    }
+
+    //SplittableRandom的gamma，依次派生每个线程的种子
+    private static final long GAMMA = 0x9e3779b97f4a7c15L;
+
+    private static final AtomicLong SEEDER = new AtomicLong(new SecureRandom().nextLong());
+
+    private static final ThreadLocal<SplittableRandom> RANDOM =
+            ThreadLocal.withInitial(() -> new SplittableRandom(mix(SEEDER.getAndAdd(GAMMA))));
+
+    private GroupIds() {
+    }
+
+    /**
+     * 新的group，同一毫秒内的顺序不确定
+     */
+    public static String next() {
+        SplittableRandom random = RANDOM.get();
+        long high = (System.currentTimeMillis() << 16) | (random.nextLong() & 0xFFFF);
+        return format(high, random.nextLong());
+    }
+
+    /**
+     * group中的签发时间（毫秒），不是本类生成的group（如旧的UUID）时返回-1
+     */
+    public static long timestamp(String group) {
+        if (!isBinary(group)) {
+            return -1;
+        }
+        return parse(group, 0) >>> 16;
+    }
+
+    /**
+     * 是否为32位小写十六进制，可以按16字节保存并原样还原
+     */
+    static boolean isBinary(String group) {
+        if (group == null || group.length() != 32) {
+            return false;
+        }
+        for (int i = 0; i < 32; i++) {
+            char c = group.charAt(i);
+            if (c >= 128 || HEX[c] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * group[from, from + 16) 的值，调用前由isBinary检查
+     */
+    static long parse(String group, int from) {
+        long value = 0;
+        for (int i = from; i < from + 16; i++) {
+            value = (value << 4) | HEX[group.charAt(i)];
+        }
+        return value;
+    }
+
+    static String format(long high, long low) {
+        char[] chars = new char[32];
+        hex(high, chars, 0);
+        hex(low, chars, 16);
+        return new String(chars);
+    }
+
+    private static void hex(long value, char[] out, int offset) {
+        for (int i = 15; i >= 0; i--) {
+            out[offset + i] = DIGITS[(int) value & 0xF];
+            value >>>= 4;
+        }
+    }
+
+    //murmur3的fmix64
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
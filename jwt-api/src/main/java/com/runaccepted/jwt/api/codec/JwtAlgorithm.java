@@ -0,0 +1,37 @@
+package com.runaccepted.jwt.api.codec;
+
+/**
+ * 支持的签名算法
+ *
+ * EdDSA(Ed25519)需要运行在JDK 15及以上，低版本加载密钥时报错
+ */
+public enum JwtAlgorithm {
+
+    HS256("HmacSHA256", null),
+    HS512("HmacSHA512", null),
+    RS256("SHA256withRSA", "RSA"),
+    EdDSA("Ed25519", "Ed25519");
+
+    //jca中的算法名
+    private final String jcaName;
+
+    //非对称算法的KeyFactory算法名，hmac为null
+    private final String keyFactory;
+
+    JwtAlgorithm(String jcaName, String keyFactory) {
+        this.jcaName = jcaName;
+        this.keyFactory = keyFactory;
+    }
+
+    public String getJcaName() {
+        return jcaName;
+    }
+
+    public String getKeyFactory() {
+        return keyFactory;
+    }
+
+    public boolean isHmac() {
+        return keyFactory == null;
+    }
+}
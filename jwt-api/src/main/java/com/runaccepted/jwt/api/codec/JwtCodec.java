@@ -0,0 +1,228 @@
+package com.runaccepted.jwt.api.codec;
+
+import com.runaccepted.jwt.api.constant.JwtConstant;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 固定载荷的jwt编解码，与jjwt 0.9.1签发的token互相验签
+ *
+ * 载荷顺序与jjwt不同，同样的载荷签发出的token字节不同，只是双方都可以验签和读取
+ *
+ * 解码时直接从字符中解码base64url，按token头（kid）从密钥环中找到密钥，
+ * 先验证签名（hmac为常量时间比较），签名通过后才解析json，并且只读取需要的载荷；
+ * 每个线程持有预先初始化的签名对象以及解码用的缓冲区
+ *
+ * 紧凑格式使用短载荷名、秒为单位的时间以及16字节的group，配合HS256签名可以缩短约一半的token；
+ * 解码时两种格式都可以读取，升级期间新旧节点签发的token互相通用
+ */
+public class JwtCodec {
+
+    //RSA 4096
+    private static final int MAX_SIGNATURE_LENGTH = 512;
+
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private volatile KeyRing keyRing;
+
+    //签发时是否使用紧凑格式
+    private volatile boolean compact;
+
+    /**
+     * @param secret 签名密钥，与jjwt中 TextCodec.BASE64.decode(secret) 的结果一致
+     */
+    public JwtCodec(byte[] secret) {
+        this(KeyRing.legacy(secret));
+    }
+
+    public JwtCodec(KeyRing keyRing) {
+        this.keyRing = keyRing;
+    }
+
+    /**
+     * 替换密钥环，不需要重启，已签发的token只要密钥仍在密钥环中就继续有效
+     */
+    public void setKeyRing(KeyRing keyRing) {
+        this.keyRing = keyRing;
+    }
+
+    public KeyRing getKeyRing() {
+        return keyRing;
+    }
+
+    /**
+     * 切换签发的载荷格式，不影响解码
+     */
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * 生成token
+     */
+    public String encode(JwtPayload payload) {
+        StringBuilder json = new StringBuilder(192).append('{');
+        if (compact) {
+            appendCompact(json, payload);
+        } else {
+            appendString(json, JwtConstant.CLAIM_KEY_USERID, payload.getId());
+            appendString(json, JwtConstant.CLAIM_KEY_USERNAME, payload.getUsername());
+            appendLong(json, JwtConstant.CLAIM_KEY_CREATED, payload.getCreated());
+            appendLong(json, JwtConstant.CLAIM_KEY_HOLDTIME, payload.getHoldTime());
+            appendString(json, JwtConstant.CLAIM_KEY_GROUP, payload.getGroup());
+            appendLong(json, JwtConstant.CLAIM_KEY_VERSION, payload.getVersion());
+        }
+        appendLong(json, PayloadReader.CLAIM_KEY_EXPIRATION, payload.getExpiration() / 1000);
+        json.setCharAt(json.length() - 1, '}');
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+
+        JwtKey key = keyRing.active();
+        StringBuilder token = new StringBuilder(key.getHeader().length() + body.length * 4 / 3 + 92);
+        token.append(key.getHeader()).append('.');
+        Base64Url.encode(body, body.length, token);
+
+        Buffers buffers = BUFFERS.get();
+        int signed = token.length();
+        byte[] input = buffers.input(signed);
+        for (int i = 0; i < signed; i++) {
+            input[i] = (byte) token.charAt(i);
+        }
+        byte[] signature = key.sign(input, signed);
+        token.append('.');
+        Base64Url.encode(signature, signature.length, token);
+        return token.toString();
+    }
+
+    /**
+     * 验证签名并读取载荷，不判断是否过期
+     *
+     * @throws JwtCodecException token格式错误或签名不匹配
+     */
+    public JwtPayload decode(String token) {
+        if (token == null) {
+            throw new JwtCodecException("token为空");
+        }
+        int first = token.indexOf('.');
+        int second = first < 0 ? -1 : token.indexOf('.', first + 1);
+        if (second < 0 || token.indexOf('.', second + 1) >= 0) {
+            throw new JwtCodecException("token格式错误");
+        }
+        JwtKey key = keyRing.forHeader(token, first);
+        if (key == null) {
+            throw new JwtCodecException("不支持的token头或kid");
+        }
+
+        Buffers buffers = BUFFERS.get();
+        int signatureLength = Base64Url.decode(token, second + 1, token.length(), buffers.signature);
+
+        byte[] input = buffers.input(second);
+        for (int i = 0; i < second; i++) {
+            char c = token.charAt(i);
+            if (c > 0x7f) {
+                throw new JwtCodecException("非法的base64url字符");
+            }
+            input[i] = (byte) c;
+        }
+        if (!key.verify(input, second, buffers.signature, signatureLength)) {
+            throw new JwtCodecException("签名不匹配");
+        }
+
+        byte[] body = buffers.payload(Base64Url.decodedLength(second - first - 1));
+        int length = Base64Url.decode(token, first + 1, second, body);
+        return PayloadReader.read(body, length);
+    }
+
+    /**
+     * {"i":"1","u":"admin","g":"AZ...","h":1489684781,"exp":1489684781}
+     *
+     * group为GroupIds生成的id（时间与签发时间相差不到1秒）时签发时间（毫秒）取自group，不再写入c；
+     * 其他group按原样写入group，签发时间按秒写入c，向下取整
+     */
+    private static void appendCompact(StringBuilder json, JwtPayload payload) {
+        appendString(json, JwtConstant.CLAIM_KEY_COMPACT_USERID, payload.getId());
+        appendString(json, JwtConstant.CLAIM_KEY_COMPACT_USERNAME, payload.getUsername());
+        String group = payload.getGroup();
+        long groupTime = GroupIds.timestamp(group);
+        if (groupTime >= 0 && Math.abs(payload.getCreated() - groupTime) < 1000) {
+            byte[] bytes = BUFFERS.get().group;
+            long high = GroupIds.parse(group, 0);
+            long low = GroupIds.parse(group, 16);
+            for (int i = 0; i < 8; i++) {
+                bytes[i] = (byte) (high >>> (56 - 8 * i));
+                bytes[8 + i] = (byte) (low >>> (56 - 8 * i));
+            }
+            json.append('"').append(JwtConstant.CLAIM_KEY_COMPACT_GROUP).append("\":\"");
+            Base64Url.encode(bytes, bytes.length, json);
+            json.append("\",");
+        } else {
+            appendLong(json, JwtConstant.CLAIM_KEY_COMPACT_CREATED, payload.getCreated() / 1000);
+            appendString(json, JwtConstant.CLAIM_KEY_GROUP, group);
+        }
+        appendLong(json, JwtConstant.CLAIM_KEY_COMPACT_HOLDTIME, payload.getHoldTime() / 1000);
+        //没有版本时按0读取
+        if (payload.getVersion() != 0) {
+            appendLong(json, JwtConstant.CLAIM_KEY_COMPACT_VERSION, payload.getVersion());
+        }
+    }
+
+    private static void appendLong(StringBuilder json, String key, long value) {
+        json.append('"').append(key).append("\":").append(value).append(',');
+    }
+
+    private static void appendString(StringBuilder json, String key, String value) {
+        //与jjwt一致，值为null的载荷不写入
+        if (value == null) {
+            return;
+        }
+        json.append('"').append(key).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append("\",");
+    }
+
+    /**
+     * 每个线程复用的缓冲区
+     */
+    private static final class Buffers {
+
+        final byte[] signature = new byte[MAX_SIGNATURE_LENGTH];
+
+        final byte[] group = new byte[16];
+
+        private byte[] input = new byte[512];
+
+        private byte[] payload = new byte[384];
+
+        byte[] input(int length) {
+            if (input.length < length) {
+                input = new byte[length];
+            }
+            return input;
+        }
+
+        byte[] payload(int length) {
+            if (payload.length < length) {
+                payload = new byte[length];
+            }
+            return payload;
+        }
+    }
+}
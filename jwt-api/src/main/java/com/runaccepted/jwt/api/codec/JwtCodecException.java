@@ -0,0 +1,13 @@
+package com.runaccepted.jwt.api.codec;
+
+/**
+ * token格式错误或签名不匹配
+ *
+ * 非法token可能是大量的攻击流量，不填充异常栈
+ */
+public class JwtCodecException extends RuntimeException {
+
+    public JwtCodecException(String message) {
+        super(message, null, false, false);
+    }
+}
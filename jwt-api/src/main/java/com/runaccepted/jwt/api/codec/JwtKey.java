@@ -0,0 +1,182 @@
+package com.runaccepted.jwt.api.codec;
+
+import lombok.Getter;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+
+/**
+ * 密钥环中的一个密钥，签名和验签对象按线程预先初始化
+ */
+@Getter
+public abstract class JwtKey {
+
+    //为null表示旧版本没有kid的token
+    private final String kid;
+
+    private final JwtAlgorithm algorithm;
+
+    //base64url编码后的token头
+    private final String header;
+
+    JwtKey(String kid, JwtAlgorithm algorithm) {
+        this.kid = kid;
+        this.algorithm = algorithm;
+        String json = kid == null
+                ? "{\"alg\":\"" + algorithm.name() + "\"}"
+                : "{\"alg\":\"" + algorithm.name() + "\",\"kid\":\"" + kid + "\"}";
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        StringBuilder sb = new StringBuilder();
+        Base64Url.encode(bytes, bytes.length, sb);
+        this.header = sb.toString();
+    }
+
+    /**
+     * 是否可以签发token，只有公钥的密钥只能验签
+     */
+    public abstract boolean canSign();
+
+    abstract byte[] sign(byte[] input, int length);
+
+    abstract boolean verify(byte[] input, int length, byte[] signature, int signatureLength);
+
+    public static JwtKey hmac(String kid, JwtAlgorithm algorithm, byte[] secret) {
+        return new HmacKey(kid, algorithm, secret);
+    }
+
+    public static JwtKey asymmetric(String kid, JwtAlgorithm algorithm, PrivateKey privateKey, PublicKey publicKey) {
+        return new SignatureKey(kid, algorithm, privateKey, publicKey);
+    }
+
+    private static final class HmacKey extends JwtKey {
+
+        private final ThreadLocal<Mac> macs;
+
+        private final ThreadLocal<byte[]> expected;
+
+        HmacKey(String kid, JwtAlgorithm algorithm, byte[] secret) {
+            super(kid, algorithm);
+            SecretKeySpec key = new SecretKeySpec(secret, algorithm.getJcaName());
+            this.macs = ThreadLocal.withInitial(() -> newMac(algorithm, key));
+            //密钥不可用时在加载时报错
+            int length = newMac(algorithm, key).getMacLength();
+            this.expected = ThreadLocal.withInitial(() -> new byte[length]);
+        }
+
+        private static Mac newMac(JwtAlgorithm algorithm, SecretKeySpec key) {
+            try {
+                Mac mac = Mac.getInstance(algorithm.getJcaName());
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("无法初始化 " + algorithm, e);
+            }
+        }
+
+        @Override
+        public boolean canSign() {
+            return true;
+        }
+
+        @Override
+        byte[] sign(byte[] input, int length) {
+            Mac mac = macs.get();
+            mac.update(input, 0, length);
+            return mac.doFinal();
+        }
+
+        @Override
+        boolean verify(byte[] input, int length, byte[] signature, int signatureLength) {
+            Mac mac = macs.get();
+            byte[] out = expected.get();
+            mac.update(input, 0, length);
+            try {
+                mac.doFinal(out, 0);
+            } catch (ShortBufferException e) {
+                throw new IllegalStateException(e);
+            }
+            if (signatureLength != out.length) {
+                return false;
+            }
+            //常量时间比较
+            int diff = 0;
+            for (int i = 0; i < out.length; i++) {
+                diff |= out[i] ^ signature[i];
+            }
+            return diff == 0;
+        }
+    }
+
+    private static final class SignatureKey extends JwtKey {
+
+        private final ThreadLocal<Signature> signers;
+
+        private final ThreadLocal<Signature> verifiers;
+
+        SignatureKey(String kid, JwtAlgorithm algorithm, PrivateKey privateKey, PublicKey publicKey) {
+            super(kid, algorithm);
+            this.signers = privateKey == null ? null : ThreadLocal.withInitial(() -> {
+                try {
+                    Signature signature = Signature.getInstance(algorithm.getJcaName());
+                    signature.initSign(privateKey);
+                    return signature;
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException("无法初始化 " + algorithm, e);
+                }
+            });
+            this.verifiers = ThreadLocal.withInitial(() -> {
+                try {
+                    Signature signature = Signature.getInstance(algorithm.getJcaName());
+                    signature.initVerify(publicKey);
+                    return signature;
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException("无法初始化 " + algorithm, e);
+                }
+            });
+            //密钥不可用时在加载时报错
+            verifiers.get();
+            if (signers != null) {
+                signers.get();
+            }
+        }
+
+        @Override
+        public boolean canSign() {
+            return signers != null;
+        }
+
+        @Override
+        byte[] sign(byte[] input, int length) {
+            if (signers == null) {
+                throw new IllegalStateException(getKid() + " 没有私钥，无法签发token");
+            }
+            try {
+                Signature signature = signers.get();
+                signature.update(input, 0, length);
+                return signature.sign();
+            } catch (GeneralSecurityException e) {
+                signers.remove();
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        boolean verify(byte[] input, int length, byte[] signature, int signatureLength) {
+            try {
+                Signature verifier = verifiers.get();
+                verifier.update(input, 0, length);
+                return verifier.verify(signature, 0, signatureLength);
+            } catch (GeneralSecurityException e) {
+                //出错后状态不确定，丢弃当前线程的对象
+                verifiers.remove();
+                return false;
+            }
+        }
+    }
+}
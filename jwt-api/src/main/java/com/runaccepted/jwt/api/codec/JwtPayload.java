@@ -0,0 +1,46 @@
+package com.runaccepted.jwt.api.codec;
+
+import lombok.Getter;
+
+/**
+ * jwt中使用的固定载荷，不可变
+ *
+ * {"id":"1","username":"admin","created":1489079981393,"holdtime":1489684781000,"group":"...","ver":0,"exp":1489684781}
+ */
+@Getter
+public class JwtPayload {
+
+    private final String id;
+
+    private final String username;
+
+    private final String group;
+
+    //创建时间，毫秒
+    private final long created;
+
+    //免登录截止时间，毫秒
+    private final long holdTime;
+
+    //过期时间，毫秒（token中以秒保存）
+    private final long expiration;
+
+    //用户的token版本，旧的token中没有，为0
+    private final long version;
+
+    public JwtPayload(String id, String username, String group,
+                      long created, long holdTime, long expiration) {
+        this(id, username, group, created, holdTime, expiration, 0);
+    }
+
+    public JwtPayload(String id, String username, String group,
+                      long created, long holdTime, long expiration, long version) {
+        this.id = id;
+        this.username = username;
+        this.group = group;
+        this.created = created;
+        this.holdTime = holdTime;
+        this.expiration = expiration;
+        this.version = version;
+    }
+}
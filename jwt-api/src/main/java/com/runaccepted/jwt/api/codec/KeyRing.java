@@ -0,0 +1,149 @@
+package com.runaccepted.jwt.api.codec;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 按kid索引的密钥环，不可变，更新时整体替换
+ *
+ * 验签时按token头匹配密钥，签发时使用active密钥；
+ * 没有kid的token头对应jwt.secret.key（HS512或HS256），兼容已经签发的token
+ */
+public final class KeyRing {
+
+    private static final Pattern KID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    private static final JwtAlgorithm[] LEGACY_ALGORITHMS = {JwtAlgorithm.HS512, JwtAlgorithm.HS256};
+
+    private final JwtKey[] keys;
+
+    private final JwtKey active;
+
+    public KeyRing(List<JwtKey> keys, JwtKey active) {
+        this.keys = keys.toArray(new JwtKey[0]);
+        this.active = active;
+    }
+
+    /**
+     * 只有jwt.secret.key一个HS512密钥的密钥环
+     */
+    public static KeyRing legacy(byte[] secret) {
+        JwtKey key = JwtKey.hmac(null, JwtAlgorithm.HS512, secret);
+        List<JwtKey> keys = new ArrayList<>();
+        keys.add(key);
+        return new KeyRing(keys, key);
+    }
+
+    /**
+     * 根据配置生成密钥环，配置错误时抛出IllegalArgumentException
+     *
+     * @param legacySecret jwt.secret.key解码后的密钥
+     */
+    public static KeyRing load(KeyRingProperties properties, byte[] legacySecret) {
+        List<JwtKey> keys = new ArrayList<>();
+        JwtKey legacy = null;
+        if (properties.isLegacyEnabled()) {
+            JwtAlgorithm legacyAlg = properties.getLegacyAlg();
+            if (legacyAlg == null || !legacyAlg.isHmac()) {
+                throw new IllegalArgumentException("jwt.secret.key只能用于hmac签名 " + legacyAlg);
+            }
+            //没有kid的token按token头中的alg区分
+            for (JwtAlgorithm alg : LEGACY_ALGORITHMS) {
+                JwtKey key = JwtKey.hmac(null, alg, legacySecret);
+                keys.add(key);
+                if (alg == legacyAlg) {
+                    legacy = key;
+                }
+            }
+        }
+        JwtKey active = legacy;
+        for (KeyRingProperties.Key key : properties.getKeys()) {
+            String kid = key.getKid();
+            if (kid == null || !KID.matcher(kid).matches()) {
+                throw new IllegalArgumentException("非法的kid " + kid);
+            }
+            for (JwtKey exist : keys) {
+                if (kid.equals(exist.getKid())) {
+                    throw new IllegalArgumentException("重复的kid " + kid);
+                }
+            }
+            JwtKey jwtKey = toKey(key);
+            keys.add(jwtKey);
+            if (kid.equals(properties.getActive())) {
+                active = jwtKey;
+            }
+        }
+        if (properties.getActive() != null && !properties.getActive().isEmpty()
+                && (active == null || !properties.getActive().equals(active.getKid()))) {
+            throw new IllegalArgumentException("active密钥不存在 " + properties.getActive());
+        }
+        if (active == null || !active.canSign()) {
+            throw new IllegalArgumentException("没有可用于签发token的密钥");
+        }
+        return new KeyRing(keys, active);
+    }
+
+    private static JwtKey toKey(KeyRingProperties.Key key) {
+        JwtAlgorithm alg = key.getAlg();
+        Base64.Decoder decoder = Base64.getMimeDecoder();
+        if (alg.isHmac()) {
+            if (key.getSecret() == null) {
+                throw new IllegalArgumentException(key.getKid() + " 缺少secret");
+            }
+            return JwtKey.hmac(key.getKid(), alg, decoder.decode(key.getSecret()));
+        }
+        if (key.getPublicKey() == null) {
+            throw new IllegalArgumentException(key.getKid() + " 缺少public-key");
+        }
+        try {
+            KeyFactory factory = KeyFactory.getInstance(alg.getKeyFactory());
+            PublicKey publicKey = factory.generatePublic(new X509EncodedKeySpec(decoder.decode(key.getPublicKey())));
+            PrivateKey privateKey = key.getPrivateKey() == null ? null
+                    : factory.generatePrivate(new PKCS8EncodedKeySpec(decoder.decode(key.getPrivateKey())));
+            return JwtKey.asymmetric(key.getKid(), alg, privateKey, publicKey);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException(key.getKid() + " 密钥无法加载: " + e.getLocalizedMessage(), e);
+        }
+    }
+
+    /**
+     * 签发token使用的密钥
+     */
+    public JwtKey active() {
+        return active;
+    }
+
+    /**
+     * 按token头 token[0, headerLength) 找到对应的密钥，不存在时返回null
+     */
+    public JwtKey forHeader(String token, int headerLength) {
+        //active密钥最常见，先比较
+        String header = active.getHeader();
+        if (header.length() == headerLength && token.regionMatches(0, header, 0, headerLength)) {
+            return active;
+        }
+        for (JwtKey key : keys) {
+            header = key.getHeader();
+            if (header.length() == headerLength && token.regionMatches(0, header, 0, headerLength)) {
+                return key;
+            }
+        }
+        return null;
+    }
+
+    public List<JwtKey> keys() {
+        List<JwtKey> list = new ArrayList<>(keys.length);
+        for (JwtKey key : keys) {
+            list.add(key);
+        }
+        return list;
+    }
+}
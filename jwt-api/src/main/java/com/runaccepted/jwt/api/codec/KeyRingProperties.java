@@ -0,0 +1,49 @@
+package com.runaccepted.jwt.api.codec;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 密钥环配置 jwt.keyring.*
+ *
+ * jwt.keyring.legacy-alg=HS256
+ * jwt.keyring.active=2026-10
+ * jwt.keyring.keys[0].kid=2026-10
+ * jwt.keyring.keys[0].alg=HS256
+ * jwt.keyring.keys[0].secret=base64编码的密钥
+ * jwt.keyring.keys[1].kid=ed-1
+ * jwt.keyring.keys[1].alg=EdDSA
+ * jwt.keyring.keys[1].private-key=base64编码的PKCS#8私钥，只验签的服务可不配置
+ * jwt.keyring.keys[1].public-key=base64编码的X.509公钥
+ */
+@Data
+public class KeyRingProperties {
+
+    //签发token使用的kid，为空时使用jwt.secret.key（没有kid的旧token格式）
+    private String active;
+
+    //是否继续接受jwt.secret.key签发的没有kid的token
+    private boolean legacyEnabled = true;
+
+    //jwt.secret.key签发token使用的算法，只能为hmac，HS256的签名长度是HS512的一半
+    //两种算法签发的没有kid的token都可以验签，节点可以分批切换
+    private JwtAlgorithm legacyAlg = JwtAlgorithm.HS512;
+
+    private List<Key> keys = new ArrayList<>();
+
+    @Data
+    public static class Key {
+
+        private String kid;
+
+        private JwtAlgorithm alg = JwtAlgorithm.HS512;
+
+        private String secret;
+
+        private String privateKey;
+
+        private String publicKey;
+    }
+}
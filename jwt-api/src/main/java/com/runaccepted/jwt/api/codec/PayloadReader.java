@@ -0,0 +1,350 @@
+package com.runaccepted.jwt.api.codec;
+
+import com.runaccepted.jwt.api.constant.JwtConstant;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 只读取固定载荷的json解析，直接在字节上扫描，未知字段跳过
+ * 原格式和紧凑格式的载荷名都可以读取，紧凑格式中的秒转换为毫秒
+ */
+final class PayloadReader {
+
+    static final String CLAIM_KEY_EXPIRATION = "exp";
+
+    private static final byte[] ID = bytes(JwtConstant.CLAIM_KEY_USERID);
+    private static final byte[] USERNAME = bytes(JwtConstant.CLAIM_KEY_USERNAME);
+    private static final byte[] CREATED = bytes(JwtConstant.CLAIM_KEY_CREATED);
+    private static final byte[] HOLDTIME = bytes(JwtConstant.CLAIM_KEY_HOLDTIME);
+    private static final byte[] GROUP = bytes(JwtConstant.CLAIM_KEY_GROUP);
+    private static final byte[] EXPIRATION = bytes(CLAIM_KEY_EXPIRATION);
+    private static final byte[] VERSION = bytes(JwtConstant.CLAIM_KEY_VERSION);
+    private static final byte[] COMPACT_ID = bytes(JwtConstant.CLAIM_KEY_COMPACT_USERID);
+    private static final byte[] COMPACT_USERNAME = bytes(JwtConstant.CLAIM_KEY_COMPACT_USERNAME);
+    private static final byte[] COMPACT_CREATED = bytes(JwtConstant.CLAIM_KEY_COMPACT_CREATED);
+    private static final byte[] COMPACT_HOLDTIME = bytes(JwtConstant.CLAIM_KEY_COMPACT_HOLDTIME);
+    private static final byte[] COMPACT_GROUP = bytes(JwtConstant.CLAIM_KEY_COMPACT_GROUP);
+    private static final byte[] COMPACT_VERSION = bytes(JwtConstant.CLAIM_KEY_COMPACT_VERSION);
+
+    //16字节group的base64url长度
+    private static final int GROUP_LENGTH = 22;
+
+    private final byte[] b;
+    private final int length;
+    private int pos;
+
+    private String id;
+    private String username;
+    private String group;
+    private long created;
+    //没有c/created时使用group中的签发时间
+    private boolean hasCreated;
+    private long groupTime;
+    private long holdTime;
+    private long expiration;
+    private long version;
+
+    private PayloadReader(byte[] b, int length) {
+        this.b = b;
+        this.length = length;
+    }
+
+    static JwtPayload read(byte[] b, int length) {
+        PayloadReader reader = new PayloadReader(b, length);
+        reader.readObject();
+        return new JwtPayload(reader.id, reader.username, reader.group,
+                reader.hasCreated ? reader.created : reader.groupTime, reader.holdTime, reader.expiration * 1000, reader.version);
+    }
+
+    private void readObject() {
+        skipWhitespace();
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return;
+        }
+        while (true) {
+            skipWhitespace();
+            expect('"');
+            int keyStart = pos;
+            skipString();
+            int keyEnd = pos - 1;
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            readValue(keyStart, keyEnd);
+            skipWhitespace();
+            byte c = next();
+            if (c == '}') {
+                return;
+            }
+            if (c != ',') {
+                throw new JwtCodecException("载荷格式错误");
+            }
+        }
+    }
+
+    private void readValue(int keyStart, int keyEnd) {
+        byte c = peek();
+        if (c == '"') {
+            pos++;
+            if (is(keyStart, keyEnd, ID) || is(keyStart, keyEnd, COMPACT_ID)) {
+                id = readString();
+            } else if (is(keyStart, keyEnd, USERNAME) || is(keyStart, keyEnd, COMPACT_USERNAME)) {
+                username = readString();
+            } else if (is(keyStart, keyEnd, GROUP)) {
+                group = readString();
+            } else if (is(keyStart, keyEnd, COMPACT_GROUP)) {
+                group = readBinaryGroup();
+            } else {
+                skipString();
+            }
+        } else if (c == '-' || (c >= '0' && c <= '9')) {
+            long value = readLong();
+            if (is(keyStart, keyEnd, CREATED)) {
+                created = value;
+                hasCreated = true;
+            } else if (is(keyStart, keyEnd, COMPACT_CREATED)) {
+                created = value * 1000;
+                hasCreated = true;
+            } else if (is(keyStart, keyEnd, HOLDTIME)) {
+                holdTime = value;
+            } else if (is(keyStart, keyEnd, COMPACT_HOLDTIME)) {
+                holdTime = value * 1000;
+            } else if (is(keyStart, keyEnd, EXPIRATION)) {
+                expiration = value;
+            } else if (is(keyStart, keyEnd, VERSION) || is(keyStart, keyEnd, COMPACT_VERSION)) {
+                version = value;
+            } else if (is(keyStart, keyEnd, ID) || is(keyStart, keyEnd, COMPACT_ID)) {
+                id = String.valueOf(value);
+            }
+        } else {
+            skipValue();
+        }
+    }
+
+    private boolean is(int start, int end, byte[] key) {
+        if (end - start != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (b[start + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 读取字符串，起始引号已读取
+     */
+    private String readString() {
+        int start = pos;
+        while (pos < length) {
+            byte c = b[pos];
+            if (c == '"') {
+                String value = new String(b, start, pos - start, StandardCharsets.UTF_8);
+                pos++;
+                return value;
+            }
+            if (c == '\\') {
+                pos = start;
+                return readEscapedString();
+            }
+            pos++;
+        }
+        throw new JwtCodecException("载荷字符串未结束");
+    }
+
+    /**
+     * 读取base64url编码的16字节group，还原为32位十六进制，起始引号已读取
+     */
+    private String readBinaryGroup() {
+        if (pos + GROUP_LENGTH >= length || b[pos + GROUP_LENGTH] != '"') {
+            throw new JwtCodecException("载荷group格式错误");
+        }
+        long high = 0;
+        long low = 0;
+        //前21个字符为126位，最后一个字符只取高2位
+        for (int i = 0; i < GROUP_LENGTH; i++) {
+            int v = Base64Url.value(b[pos + i]);
+            if (v < 0) {
+                throw new JwtCodecException("非法的base64url字符");
+            }
+            int shift = i < GROUP_LENGTH - 1 ? 6 : 2;
+            if (shift == 2) {
+                v >>>= 4;
+            }
+            high = (high << shift) | (low >>> (64 - shift));
+            low = (low << shift) | v;
+        }
+        pos += GROUP_LENGTH + 1;
+        groupTime = high >>> 16;
+        return GroupIds.format(high, low);
+    }
+
+    private String readEscapedString() {
+        StringBuilder sb = new StringBuilder();
+        int run = pos;
+        while (pos < length) {
+            byte c = b[pos];
+            if (c == '"') {
+                sb.append(new String(b, run, pos - run, StandardCharsets.UTF_8));
+                pos++;
+                return sb.toString();
+            }
+            if (c != '\\') {
+                pos++;
+                continue;
+            }
+            sb.append(new String(b, run, pos - run, StandardCharsets.UTF_8));
+            pos++;
+            byte e = next();
+            switch (e) {
+                case '"': sb.append('"'); break;
+                case '\\': sb.append('\\'); break;
+                case '/': sb.append('/'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (pos + 4 > length) {
+                        throw new JwtCodecException("载荷转义错误");
+                    }
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        code = (code << 4) | hex(b[pos++]);
+                    }
+                    sb.append((char) code);
+                    break;
+                default:
+                    throw new JwtCodecException("载荷转义错误");
+            }
+            run = pos;
+        }
+        throw new JwtCodecException("载荷字符串未结束");
+    }
+
+    private static int hex(byte c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        throw new JwtCodecException("载荷转义错误");
+    }
+
+    /**
+     * 跳过字符串，起始引号已读取
+     */
+    private void skipString() {
+        while (pos < length) {
+            byte c = b[pos++];
+            if (c == '\\') {
+                pos++;
+            } else if (c == '"') {
+                return;
+            }
+        }
+        throw new JwtCodecException("载荷字符串未结束");
+    }
+
+    /**
+     * 整数部分，小数和指数部分跳过
+     */
+    private long readLong() {
+        boolean negative = false;
+        if (peek() == '-') {
+            negative = true;
+            pos++;
+        }
+        long value = 0;
+        int digits = 0;
+        while (pos < length && b[pos] >= '0' && b[pos] <= '9') {
+            value = value * 10 + (b[pos++] - '0');
+            digits++;
+        }
+        if (digits == 0 || digits > 18) {
+            throw new JwtCodecException("载荷数字错误");
+        }
+        while (pos < length && (b[pos] == '.' || b[pos] == 'e' || b[pos] == 'E'
+                || b[pos] == '+' || b[pos] == '-' || (b[pos] >= '0' && b[pos] <= '9'))) {
+            pos++;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * 跳过 true/false/null 以及嵌套的对象和数组
+     */
+    private void skipValue() {
+        int depth = 0;
+        while (pos < length) {
+            byte c = b[pos];
+            if (c == '"') {
+                pos++;
+                skipString();
+                if (depth == 0) {
+                    return;
+                }
+                continue;
+            }
+            if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                if (depth == 0) {
+                    return;
+                }
+                depth--;
+                if (depth == 0) {
+                    pos++;
+                    return;
+                }
+            } else if (c == ',' && depth == 0) {
+                return;
+            }
+            pos++;
+        }
+        throw new JwtCodecException("载荷格式错误");
+    }
+
+    private void skipWhitespace() {
+        while (pos < length) {
+            byte c = b[pos];
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private byte peek() {
+        if (pos >= length) {
+            throw new JwtCodecException("载荷格式错误");
+        }
+        return b[pos];
+    }
+
+    private byte next() {
+        byte c = peek();
+        pos++;
+        return c;
+    }
+
+    private void expect(char c) {
+        if (next() != c) {
+            throw new JwtCodecException("载荷格式错误");
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
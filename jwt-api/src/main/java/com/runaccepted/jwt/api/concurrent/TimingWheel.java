@@ -0,0 +1,184 @@
+package com.runaccepted.jwt.api.concurrent;
+
+import java.io.Closeable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 分层时间轮，到期后在后台线程中执行任务
+ *
+ * 5层，每层64个槽，第n层的一个槽为64^n个tick；任务按距到期的tick数放入对应层，
+ * 低一层转完一圈时把高一层当前槽中的任务重新分配到低层（cascade），第0层的槽到达时执行。
+ * 添加任务只是放入无锁队列，时间轮的状态只由后台线程访问，没有每个任务一个的定时器
+ */
+public class TimingWheel implements Closeable {
+
+    private static final int BITS = 6;
+
+    private static final int WHEEL = 1 << BITS;
+
+    private static final int MASK = WHEEL - 1;
+
+    private static final int LEVELS = 5;
+
+    private final long tickMillis;
+
+    //每个槽是一个单向链表
+    private final Node[][] slots = new Node[LEVELS][WHEEL];
+
+    //等待加入时间轮的任务
+    private final Queue<Node> pending = new ConcurrentLinkedQueue<>();
+
+    private final Thread worker;
+
+    private volatile boolean running = true;
+
+    //已经处理到的tick（时间戳 / tickMillis），只由后台线程访问
+    private long currentTick;
+
+    /**
+     * @param name       后台线程名
+     * @param tickMillis 一个tick的毫秒数，即到期执行的精度
+     */
+    public TimingWheel(String name, long tickMillis) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("tick应不小于1毫秒: " + tickMillis);
+        }
+        this.tickMillis = tickMillis;
+        this.currentTick = System.currentTimeMillis() / tickMillis;
+        this.worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 不启动后台线程，由调用方通过tick推进（测试用）
+     *
+     * @param currentTick 起始的tick（时间戳 / tickMillis）
+     */
+    public TimingWheel(long tickMillis, long currentTick) {
+        this.tickMillis = tickMillis;
+        this.currentTick = currentTick;
+        this.worker = null;
+    }
+
+    /**
+     * @param deadline 到期时间（毫秒时间戳），向上取整到tick，不会早于到期时间执行；已过期的任务在下一个tick执行
+     * @param task     在后台线程中执行，不应阻塞
+     */
+    public void schedule(long deadline, Runnable task) {
+        pending.offer(new Node((deadline + tickMillis - 1) / tickMillis, task));
+    }
+
+    private void run() {
+        long tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        while (running) {
+            tick(System.currentTimeMillis() / tickMillis);
+            LockSupport.parkNanos(this, tickNanos);
+        }
+    }
+
+    /**
+     * 加入等待的任务，推进到now（tick），执行期间到期的任务；没有后台线程时由调用方调用
+     */
+    public void tick(long now) {
+        drain();
+        //落后时（GC停顿、时钟跳变）逐个tick追上
+        while (currentTick < now) {
+            advance();
+        }
+    }
+
+    private void drain() {
+        Node node;
+        while ((node = pending.poll()) != null) {
+            if (node.deadline <= currentTick) {
+                //放入下一个tick的槽，任务中再次schedule的任务不会在本次drain中循环执行
+                int index = (int) ((currentTick + 1) & MASK);
+                node.next = slots[0][index];
+                slots[0][index] = node;
+            } else {
+                add(node);
+            }
+        }
+    }
+
+    private void add(Node node) {
+        long ticks = node.deadline - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && ticks >= 1L << (BITS * (level + 1))) {
+            level++;
+        }
+        //超出最高层范围的任务放在最高层，重新分配时再按实际到期时间计算
+        long deadline = Math.min(node.deadline, currentTick + (1L << (BITS * LEVELS)) - 1);
+        int index = (int) ((deadline >>> (BITS * level)) & MASK);
+        node.next = slots[level][index];
+        slots[level][index] = node;
+    }
+
+    private void advance() {
+        currentTick++;
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (BITS * level)) - 1)) != 0) {
+                break;
+            }
+            int index = (int) ((currentTick >>> (BITS * level)) & MASK);
+            Node node = slots[level][index];
+            slots[level][index] = null;
+            while (node != null) {
+                Node next = node.next;
+                add(node);
+                node = next;
+            }
+        }
+        int index = (int) (currentTick & MASK);
+        Node node = slots[0][index];
+        slots[0][index] = null;
+        while (node != null) {
+            Node next = node.next;
+            execute(node);
+            node = next;
+        }
+    }
+
+    private static void execute(Node node) {
+        try {
+            node.task.run();
+        } catch (RuntimeException e) {
+            //单个任务的异常不影响时间轮
+        }
+    }
+
+    /**
+     * 停止后台线程，未到期的任务不再执行
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (worker == null) {
+            return;
+        }
+        LockSupport.unpark(worker);
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Node {
+
+        private final long deadline;
+
+        private final Runnable task;
+
+        private Node next;
+
+        private Node(long deadline, Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+    }
+}
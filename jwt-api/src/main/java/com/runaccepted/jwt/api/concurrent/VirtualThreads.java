@@ -0,0 +1,45 @@
+package com.runaccepted.jwt.api.concurrent;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 虚拟线程（JDK 21+），项目按Java 8编译，通过反射调用
+ * 运行在低版本JDK上时不可用，调用方回退到平台线程池
+ */
+public final class VirtualThreads {
+
+    private static final Method NEW_EXECUTOR = lookup();
+
+    private VirtualThreads() {
+    }
+
+    private static Method lookup() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    public static boolean isSupported() {
+        return NEW_EXECUTOR != null;
+    }
+
+    /**
+     * 每个任务一个虚拟线程的线程池
+     *
+     * @throws UnsupportedOperationException 当前JDK不支持虚拟线程
+     */
+    public static ExecutorService newPerTaskExecutor() {
+        if (NEW_EXECUTOR == null) {
+            throw new UnsupportedOperationException("虚拟线程需要JDK 21及以上，当前为 " + System.getProperty("java.version"));
+        }
+        try {
+            return (ExecutorService) NEW_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
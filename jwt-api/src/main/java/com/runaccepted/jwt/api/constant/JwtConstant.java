@@ -10,4 +10,15 @@ public class JwtConstant {
     public static final String CLAIM_KEY_HOLDTIME = "holdtime";
     //用于区分token，充当存入redis中的key
     public static final String CLAIM_KEY_GROUP = "group";
+    //用户的token版本，与redis中的版本号比较，小于时token已被注销
+    public static final String CLAIM_KEY_VERSION = "ver";
+
+    //紧凑格式（jwt.token.compact=true）使用的载荷名，时间为秒
+    public static final String CLAIM_KEY_COMPACT_USERID = "i";
+    public static final String CLAIM_KEY_COMPACT_USERNAME = "u";
+    public static final String CLAIM_KEY_COMPACT_CREATED = "c";
+    public static final String CLAIM_KEY_COMPACT_HOLDTIME = "h";
+    //16字节的group，base64url编码，签发时间取自group的高48位
+    public static final String CLAIM_KEY_COMPACT_GROUP = "g";
+    public static final String CLAIM_KEY_COMPACT_VERSION = "v";
 }
@@ -0,0 +1,40 @@
+package com.runaccepted.jwt.api.event;
+
+/**
+ * 环形缓冲区中的事件槽，预先分配、循环使用
+ *
+ * 只保存引用和基本类型，格式化在后台线程中完成
+ */
+final class AuthEvent {
+
+    long time;
+
+    AuthEventType type;
+
+    int code;
+
+    String id;
+
+    String group;
+
+    String detail;
+
+    void set(long time, AuthEventType type, int code, String id, String group, String detail) {
+        this.time = time;
+        this.type = type;
+        this.code = code;
+        this.id = id;
+        this.group = group;
+        this.detail = detail;
+    }
+
+    /**
+     * 写出后释放引用，不让缓冲区持有请求中的对象
+     */
+    void clear() {
+        type = null;
+        id = null;
+        group = null;
+        detail = null;
+    }
+}
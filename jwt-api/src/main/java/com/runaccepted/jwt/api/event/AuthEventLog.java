@@ -0,0 +1,235 @@
+package com.runaccepted.jwt.api.event;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步的鉴权事件日志
+ *
+ * 请求线程只把事件的字段写入有界环形缓冲区（多生产者单消费者，每个槽一个序号，CAS占位，不加锁），
+ * 后台线程批量取出，格式化为每行一个json追加到文件；
+ * 缓冲区满时丢弃事件并计数，请求线程从不等待磁盘
+ */
+public class AuthEventLog implements Closeable {
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS")
+            .withZone(ZoneId.systemDefault());
+
+    //每批最多写出的事件数，之后flush一次
+    private static final int BATCH = 1024;
+
+    //缓冲区为空时后台线程的等待时间
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final AuthEvent[] slots;
+
+    //槽的序号：等于位置时可写入，等于位置+1时可读取
+    private final AtomicLongArray sequences;
+
+    private final int mask;
+
+    //生产者下一个写入位置
+    private final AtomicLong tail = new AtomicLong();
+
+    //消费者下一个读取位置，只由后台线程访问
+    private long head;
+
+    private final int sampleRate;
+
+    private final Path file;
+
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong written = new AtomicLong();
+
+    private final AtomicLong errors = new AtomicLong();
+
+    /**
+     * @param file       事件文件，追加写入
+     * @param capacity   缓冲区大小，向上取2的幂
+     * @param sampleRate 抽样类型的事件每sampleRate个记录1个，1为全部记录
+     */
+    public AuthEventLog(Path file, int capacity, int sampleRate) {
+        if (capacity < 2 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("缓冲区大小应在2到2^30之间: " + capacity);
+        }
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("抽样比例应不小于1: " + sampleRate);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AuthEvent[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new AuthEvent();
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.sampleRate = sampleRate;
+        this.file = file;
+        this.writer = new Thread(this::run, "auth-event-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * 记录一个事件，不格式化、不阻塞
+     *
+     * @return 是否写入缓冲区（未被抽样跳过，缓冲区未满）
+     */
+    public boolean publish(AuthEventType type, int code, String id, String group, String detail) {
+        if (type.isSampled() && sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return false;
+        }
+        long position = tail.get();
+        int index;
+        for (;;) {
+            index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                //缓冲区已满
+                dropped.incrementAndGet();
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+        slots[index].set(System.currentTimeMillis(), type, code, id, group, detail);
+        sequences.lazySet(index, position + 1);
+        return true;
+    }
+
+    /**
+     * 缓冲区满被丢弃的事件数
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * 写文件失败的批次数
+     */
+    public long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * 停止后台线程，写出缓冲区中剩余的事件
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        StringBuilder batch = new StringBuilder(BATCH * 128);
+        while (true) {
+            boolean stopping = !running;
+            int count = drain(batch);
+            if (count > 0) {
+                write(batch, count);
+            } else if (stopping) {
+                return;
+            } else {
+                LockSupport.parkNanos(this, IDLE_NANOS);
+            }
+        }
+    }
+
+    /**
+     * 取出已发布的事件并格式化
+     */
+    private int drain(StringBuilder batch) {
+        batch.setLength(0);
+        int count = 0;
+        while (count < BATCH) {
+            int index = (int) head & mask;
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            AuthEvent event = slots[index];
+            format(event, batch);
+            event.clear();
+            sequences.lazySet(index, head + mask + 1);
+            head++;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 每批打开一次文件，外部按大小切分（logrotate copytruncate/移动）后自动写入新文件
+     */
+    private void write(StringBuilder batch, int count) {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE)) {
+            out.append(batch);
+            written.addAndGet(count);
+        } catch (IOException e) {
+            errors.incrementAndGet();
+            dropped.addAndGet(count);
+        }
+    }
+
+    private static void format(AuthEvent event, StringBuilder out) {
+        out.append("{\"time\":\"");
+        TIME.formatTo(Instant.ofEpochMilli(event.time), out);
+        out.append("\",\"event\":\"").append(event.type.getLabel()).append('"');
+        if (event.code != 0) {
+            out.append(",\"code\":").append(event.code);
+        }
+        appendField(out, "id", event.id);
+        appendField(out, "group", event.group);
+        appendField(out, "detail", event.detail);
+        out.append("}\n");
+    }
+
+    private static void appendField(StringBuilder out, String name, String value) {
+        if (value == null) {
+            return;
+        }
+        out.append(",\"").append(name).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,40 @@
+package com.runaccepted.jwt.api.event;
+
+/**
+ * 鉴权事件类型
+ *
+ * 通过鉴权的请求数量最多，被限流的请求在攻击时数量很大，两者按jwt.event.sample抽样记录，其余事件全部记录
+ */
+public enum AuthEventType {
+
+    //网关放行
+    PASS(true),
+    //网关拒绝，code为返回码
+    REJECT(false),
+    //网关限流拒绝
+    THROTTLE(true),
+    //网关重新签发token
+    REFRESH(false),
+    //jwt-client 登录/重新登录/登出/刷新token
+    LOGIN(false),
+    RELOGIN(false),
+    LOGOUT(false),
+    TOKEN_REFRESH(false);
+
+    private final boolean sampled;
+
+    private final String label;
+
+    AuthEventType(boolean sampled) {
+        this.sampled = sampled;
+        this.label = name().toLowerCase();
+    }
+
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    String getLabel() {
+        return label;
+    }
+}
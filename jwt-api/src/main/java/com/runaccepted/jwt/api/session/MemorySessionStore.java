@@ -0,0 +1,221 @@
+package com.runaccepted.jwt.api.session;
+
+import com.runaccepted.jwt.api.concurrent.TimingWheel;
+
+import java.io.Closeable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * 进程内的会话存储，语义与redis的lua脚本相同
+ *
+ * 每个用户一个不可变的记录，写入时通过ConcurrentHashMap.compute整体替换，同一用户的操作是原子的，读取不加锁。
+ * 读取时按精确的过期时间判断；过期记录的删除由分层时间轮批量完成，不为每个key创建定时器。
+ * 会话只在本进程中可见，不发布失效通知
+ */
+public class MemorySessionStore implements SessionStore, Closeable {
+
+    private static final long NEVER = Long.MAX_VALUE;
+
+    private final ConcurrentHashMap<String, UserSession> users = new ConcurrentHashMap<>();
+
+    //用户id:group -> 过期时间
+    private final ConcurrentHashMap<String, Long> blacklist = new ConcurrentHashMap<>();
+
+    private volatile Cutoff cutoff = new Cutoff(0, 0);
+
+    private final TimingWheel wheel;
+
+    private final LongSupplier clock;
+
+    /**
+     * @param tickMillis 过期记录的删除粒度（毫秒）
+     */
+    public MemorySessionStore(long tickMillis) {
+        this(new TimingWheel("session-expiry", tickMillis), System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock 判断过期使用的当前时间（毫秒），测试中与时间轮一起替换
+     */
+    MemorySessionStore(TimingWheel wheel, LongSupplier clock) {
+        this.wheel = wheel;
+        this.clock = clock;
+    }
+
+    @Override
+    public long version(String id) {
+        UserSession user = users.get(id);
+        return user == null ? 0 : user.version(clock.getAsLong());
+    }
+
+    @Override
+    public long login(String id, String username, String token, long version, long ttl, boolean force) {
+        long now = clock.getAsLong();
+        long expires = now + Math.max(ttl, 1);
+        long[] status = {CREATED};
+        UserSession updated = users.compute(id, (key, user) -> {
+            long current = user == null ? 0 : user.version(now);
+            if (version != current) {
+                status[0] = STALE;
+                return user;
+            }
+            if (!force && user != null && user.username(now) != null) {
+                status[0] = LOGGED_IN;
+                return user;
+            }
+            return new UserSession(username, expires, token, expires,
+                    current, user == null ? NEVER : user.versionExpires);
+        });
+        if (status[0] == CREATED) {
+            expire(id, updated);
+        }
+        return status[0];
+    }
+
+    @Override
+    public long revoke(String id, long ttl) {
+        long now = clock.getAsLong();
+        UserSession updated = users.compute(id, (key, user) -> {
+            long version = (user == null ? 0 : user.version(now)) + 1;
+            long versionExpires = ttl > 0 ? now + ttl
+                    : user == null || user.versionExpires <= now ? NEVER : user.versionExpires;
+            return new UserSession(null, 0, null, 0, version, versionExpires);
+        });
+        expire(id, updated);
+        return updated.version;
+    }
+
+    @Override
+    public void refresh(String id, String group, String username, String token, long ttl) {
+        if (ttl <= 0) {
+            return;
+        }
+        long now = clock.getAsLong();
+        long expires = now + ttl;
+        String blackKey = id + ":" + group;
+        blacklist.put(blackKey, expires);
+        expireBlacklist(blackKey, expires);
+        UserSession updated = users.compute(id, (key, user) -> new UserSession(username, expires, token, expires,
+                user == null ? 0 : user.version(now), user == null ? NEVER : user.versionExpires));
+        expire(id, updated);
+    }
+
+    @Override
+    public void revokeIssuedBefore(long cutoff, long ttl) {
+        this.cutoff = new Cutoff(cutoff, clock.getAsLong() + Math.max(ttl, 1));
+    }
+
+    @Override
+    public long revokedBefore() {
+        Cutoff current = cutoff;
+        return current.expires > clock.getAsLong() ? current.value : 0;
+    }
+
+    @Override
+    public long check(String id, String group, String token, long version) {
+        long now = clock.getAsLong();
+        UserSession user = users.get(id);
+        if (user != null && version < user.version(now)) {
+            return LOGGED_OUT;
+        }
+        Long blacklisted = blacklist.get(id + ":" + group);
+        if (blacklisted != null && blacklisted > now) {
+            return LOGGED_OUT;
+        }
+        String active = user == null ? null : user.token(now);
+        return active != null && active.equals(token) ? ALLOW : MISMATCH;
+    }
+
+    /**
+     * 黑名单条目到期后删除，期间被延长的条目保留
+     */
+    private void expireBlacklist(String blackKey, long expires) {
+        wheel.schedule(expires, () -> {
+            if (expires > clock.getAsLong()) {
+                expireBlacklist(blackKey, expires);
+            } else {
+                blacklist.remove(blackKey, expires);
+            }
+        });
+    }
+
+    /**
+     * 记录全部过期后删除，期间被替换或延长的记录保留
+     */
+    private void expire(String id, UserSession user) {
+        long expires = user.expires();
+        if (expires != NEVER) {
+            wheel.schedule(expires, () -> {
+                UserSession current = users.computeIfPresent(id,
+                        (key, stored) -> stored.expires() <= clock.getAsLong() ? null : stored);
+                //提前执行（时钟回拨）时重新安排，被替换的记录由替换时安排
+                if (current == user) {
+                    expire(id, user);
+                }
+            });
+        }
+    }
+
+    /**
+     * 当前的用户记录数，包括已过期但尚未删除的
+     */
+    public int size() {
+        return users.size();
+    }
+
+    @Override
+    public void close() {
+        wheel.close();
+    }
+
+    /**
+     * 一个用户的登录用户名、活跃token和token版本，各自有过期时间
+     */
+    private static final class UserSession {
+
+        private final String username;
+        private final long usernameExpires;
+        private final String token;
+        private final long tokenExpires;
+        private final long version;
+        private final long versionExpires;
+
+        private UserSession(String username, long usernameExpires, String token, long tokenExpires,
+                            long version, long versionExpires) {
+            this.username = username;
+            this.usernameExpires = usernameExpires;
+            this.token = token;
+            this.tokenExpires = tokenExpires;
+            this.version = version;
+            this.versionExpires = versionExpires;
+        }
+
+        private String username(long now) {
+            return usernameExpires > now ? username : null;
+        }
+
+        private String token(long now) {
+            return tokenExpires > now ? token : null;
+        }
+
+        private long version(long now) {
+            return versionExpires > now ? version : 0;
+        }
+
+        private long expires() {
+            return Math.max(Math.max(usernameExpires, tokenExpires), version == 0 ? 0 : versionExpires);
+        }
+    }
+
+    private static final class Cutoff {
+
+        private final long value;
+        private final long expires;
+
+        private Cutoff(long value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.runaccepted.jwt.api.session;
+
+import java.util.List;
+
+/**
+ * 登录会话的存储
+ *
+ * jwt-client在登录/重新登录/登出/刷新时写入，网关据此判断token是否仍是当前会话。
+ * 实现有redis（多个节点共享）和MemorySessionStore（进程内，没有网络往返，用于单节点和测试），
+ * 由 jwt.session.store=redis|memory 选择
+ */
+public interface SessionStore {
+
+    //login：已创建
+    long CREATED = 0;
+    //login：已经登录
+    long LOGGED_IN = 1;
+    //login：token中的版本与当前版本不同（签发后又被加一或预先签发时猜错），需按当前版本重新签发
+    long STALE = 2;
+
+    //check：放行
+    long ALLOW = 0;
+    //check：已加入黑名单或token版本已过时 - 已登出
+    long LOGGED_OUT = 1;
+    //check：活跃token不存在或不匹配
+    long MISMATCH = 2;
+
+    /**
+     * 签发新token时写入的版本
+     * redis实现返回本节点最近一次看到的版本（不访问redis），可能已过时，由login校验
+     */
+    long version(String id);
+
+    /**
+     * 校验版本，写入登录用户名和活跃token
+     * 返回STALE后version(id)返回当前版本，按它重新签发
+     *
+     * @param version 新token中的版本，与当前版本不同时返回STALE
+     * @param ttl     有效时间（毫秒）
+     * @param force   已登录时是否覆盖
+     * @return CREATED / LOGGED_IN / STALE
+     */
+    long login(String id, String username, String token, long version, long ttl, boolean force);
+
+    /**
+     * 删除登录用户名和活跃token，token版本加一，之前签发的token全部失效
+     *
+     * @param ttl 版本号的有效时间（毫秒）
+     * @return 新的token版本
+     */
+    long revoke(String id, long ttl);
+
+    /**
+     * 原token加入黑名单，写入新的活跃token并延长登录用户名
+     *
+     * @param group 原token的group
+     * @param ttl   有效时间（毫秒）
+     */
+    void refresh(String id, String group, String username, String token, long ttl);
+
+    /**
+     * 批量注销，与逐个revoke相同
+     */
+    default void revokeAll(List<String> ids, long ttl) {
+        for (String id : ids) {
+            revoke(id, ttl);
+        }
+    }
+
+    /**
+     * 注销在cutoff之前签发的全部token
+     *
+     * @param ttl 截止时间的保留时间（毫秒）
+     */
+    void revokeIssuedBefore(long cutoff, long ttl);
+
+    /**
+     * 批量注销的截止时间，没有时为0
+     */
+    long revokedBefore();
+
+    /**
+     * token是否已登出、是否是当前活跃的token
+     *
+     * @param group   token的group
+     * @param version token中的版本
+     * @return ALLOW / LOGGED_OUT / MISMATCH
+     */
+    long check(String id, String group, String token, long version);
+}
@@ -0,0 +1,19 @@
+package com.runaccepted.jwt.api.to;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ApiModel(value = "批量注销")
+public class RevokeRequest {
+
+    @ApiModelProperty(value = "注销这些用户id的全部token")
+    private List<String> ids = new ArrayList<>();
+
+    @ApiModelProperty(value = "注销在该时间（毫秒）之前签发的全部token")
+    private Long issuedBefore;
+}
@@ -0,0 +1,157 @@
+package com.runaccepted.jwt.api.codec;
+
+import com.runaccepted.jwt.api.constant.JwtConstant;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.impl.TextCodec;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * JwtCodec与jjwt 0.9.1签发的token互相验签，以及各种非法token
+ */
+class JwtCodecTest {
+
+    private static final String SECRET = "online-runaccepted";
+
+    private static final long NOW = 1792213126123L;
+
+    private final JwtCodec codec = new JwtCodec(TextCodec.BASE64.decode(SECRET));
+
+    /**
+     * 与原JwtUtils相同的方式由jjwt签发
+     */
+    private static String jjwtToken(String username) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(JwtConstant.CLAIM_KEY_USERID, "1");
+        claims.put(JwtConstant.CLAIM_KEY_USERNAME, username);
+        claims.put(JwtConstant.CLAIM_KEY_CREATED, new Date(NOW));
+        claims.put(JwtConstant.CLAIM_KEY_HOLDTIME, new Date(NOW + 3_600_000));
+        claims.put(JwtConstant.CLAIM_KEY_GROUP, "0123456789abcdef0123456789abcdef");
+        return Jwts.builder()
+                .setClaims(claims)
+                .setExpiration(new Date(NOW + 120_000))
+                .signWith(SignatureAlgorithm.HS512, SECRET)
+                .compact();
+    }
+
+    @Test
+    void decodesJjwtToken() {
+        JwtPayload payload = codec.decode(jjwtToken("admin"));
+        assertEquals("1", payload.getId());
+        assertEquals("admin", payload.getUsername());
+        assertEquals("0123456789abcdef0123456789abcdef", payload.getGroup());
+        assertEquals(NOW, payload.getCreated());
+        assertEquals(NOW + 3_600_000, payload.getHoldTime());
+        //exp按秒保存
+        assertEquals((NOW + 120_000) / 1000 * 1000, payload.getExpiration());
+        assertEquals(0, payload.getVersion());
+    }
+
+    @Test
+    void jjwtVerifiesEncodedToken() {
+        String token = codec.encode(new JwtPayload("1", "admin", "0123456789abcdef0123456789abcdef",
+                NOW, NOW + 3_600_000, System.currentTimeMillis() + 120_000, 7));
+        Claims claims = Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token).getBody();
+        assertEquals("1", claims.get(JwtConstant.CLAIM_KEY_USERID));
+        assertEquals("admin", claims.get(JwtConstant.CLAIM_KEY_USERNAME));
+        assertEquals("0123456789abcdef0123456789abcdef", claims.get(JwtConstant.CLAIM_KEY_GROUP));
+        assertEquals(NOW, ((Number) claims.get(JwtConstant.CLAIM_KEY_CREATED)).longValue());
+        assertEquals(NOW + 3_600_000, ((Number) claims.get(JwtConstant.CLAIM_KEY_HOLDTIME)).longValue());
+        assertEquals(7, ((Number) claims.get(JwtConstant.CLAIM_KEY_VERSION)).longValue());
+    }
+
+    @Test
+    void escapedStringsRoundTrip() {
+        String username = "a\"b\\c/é\n\t\u0001中";
+        assertEquals(username, codec.decode(jjwtToken(username)).getUsername());
+
+        String token = codec.encode(new JwtPayload("1", username, "g", NOW, NOW, System.currentTimeMillis() + 60_000));
+        assertEquals(username, codec.decode(token).getUsername());
+        assertEquals(username, Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token).getBody()
+                .get(JwtConstant.CLAIM_KEY_USERNAME));
+    }
+
+    @Test
+    void decodesUnicodeEscapesAndSkipsUnknownClaims() {
+        String json = "{\"id\":1,\"username\":\"\\u0061\\u00e9\\/x\",\"extra\":{\"a\":[1,\"}\"]},"
+                + "\"flag\":true,\"ratio\":-1.5e3,\"group\":\"g\",\"created\":1500,\"exp\":100}";
+        String token = Jwts.builder().setPayload(json).signWith(SignatureAlgorithm.HS512, SECRET).compact();
+        JwtPayload payload = codec.decode(token);
+        assertEquals("1", payload.getId());
+        assertEquals("aé/x", payload.getUsername());
+        assertEquals("g", payload.getGroup());
+        assertEquals(1500, payload.getCreated());
+        assertEquals(100_000, payload.getExpiration());
+    }
+
+    @Test
+    void rejectsTamperedSignature() {
+        String token = jjwtToken("admin");
+        char last = token.charAt(token.length() - 2);
+        String tampered = token.substring(0, token.length() - 2) + (last == 'A' ? 'B' : 'A') + token.charAt(token.length() - 1);
+        assertThrows(JwtCodecException.class, () -> codec.decode(tampered));
+    }
+
+    @Test
+    void rejectsTamperedPayload() {
+        String token = jjwtToken("admin");
+        int first = token.indexOf('.');
+        String forged = codec.encode(new JwtPayload("1", "root", "g", NOW, NOW, NOW));
+        String payload = forged.substring(forged.indexOf('.') + 1, forged.lastIndexOf('.'));
+        String tampered = token.substring(0, first + 1) + payload + token.substring(token.lastIndexOf('.'));
+        assertThrows(JwtCodecException.class, () -> codec.decode(tampered));
+    }
+
+    @Test
+    void rejectsOtherAlgorithm() {
+        //没有kid的HS256 token，密钥环中只有HS512
+        String token = Jwts.builder().setSubject("x").signWith(SignatureAlgorithm.HS256, SECRET).compact();
+        assertThrows(JwtCodecException.class, () -> codec.decode(token));
+        //alg:none
+        String none = Jwts.builder().setSubject("x").compact();
+        assertThrows(JwtCodecException.class, () -> codec.decode(none));
+    }
+
+    @Test
+    void rejectsUnknownKid() {
+        byte[] secret = TextCodec.BASE64.decode(SECRET);
+        JwtKey k1 = JwtKey.hmac("k1", JwtAlgorithm.HS256, secret);
+        JwtKey k2 = JwtKey.hmac("k2", JwtAlgorithm.HS256, secret);
+        JwtCodec signer = new JwtCodec(new KeyRing(Collections.singletonList(k2), k2));
+        JwtCodec verifier = new JwtCodec(new KeyRing(Collections.singletonList(k1), k1));
+        String token = signer.encode(new JwtPayload("1", "admin", "g", NOW, NOW, NOW));
+        assertThrows(JwtCodecException.class, () -> verifier.decode(token));
+        assertEquals("admin", signer.decode(token).getUsername());
+    }
+
+    @Test
+    void rejectsMalformedBase64Url() {
+        String token = jjwtToken("admin");
+        int first = token.indexOf('.');
+        //非法字符
+        assertThrows(JwtCodecException.class,
+                () -> codec.decode(token.substring(0, first + 1) + "*" + token.substring(first + 2)));
+        //签名长度 %4 == 1
+        assertThrows(JwtCodecException.class, () -> codec.decode(token + "A"));
+        //段数错误
+        assertThrows(JwtCodecException.class, () -> codec.decode(token.substring(0, token.lastIndexOf('.'))));
+        assertThrows(JwtCodecException.class, () -> codec.decode(token + ".x"));
+        assertThrows(JwtCodecException.class, () -> codec.decode(null));
+    }
+
+    @Test
+    void rejectsMalformedPayloadWithValidSignature() {
+        String token = Jwts.builder().setPayload("{\"id\":\"1\",\"username\":\"adm")
+                .signWith(SignatureAlgorithm.HS512, SECRET).compact();
+        assertThrows(JwtCodecException.class, () -> codec.decode(token));
+    }
+}
@@ -0,0 +1,157 @@
+package com.runaccepted.jwt.api.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 分层时间轮：由测试逐个tick推进，任务应恰好在到期的tick执行
+ */
+class TimingWheelTest {
+
+    private static final long LEVEL1 = 1L << 6;
+    private static final long LEVEL2 = 1L << 12;
+    private static final long LEVEL3 = 1L << 18;
+    private static final long LEVEL4 = 1L << 24;
+    private static final long RANGE = 1L << 30;
+
+    /**
+     * 按tick推进到end，记录每个任务执行时的tick
+     */
+    private static void runUntil(TimingWheel wheel, long start, long end) {
+        for (long tick = start; tick <= end; tick++) {
+            wheel.tick(tick);
+        }
+    }
+
+    private static void schedule(TimingWheel wheel, long[] executedAt, int i, long deadline, long[] now) {
+        wheel.schedule(deadline, () -> executedAt[i] = now[0]);
+    }
+
+    @Test
+    void pastDeadlineRunsOnNextTick() {
+        long start = 1_000_000;
+        TimingWheel wheel = new TimingWheel(1, start);
+        List<Long> executed = new ArrayList<>();
+        wheel.schedule(start - 500, () -> executed.add(-500L));
+        wheel.schedule(start, () -> executed.add(0L));
+        wheel.schedule(start + 1, () -> executed.add(1L));
+        wheel.tick(start);
+        assertTrue(executed.isEmpty());
+        wheel.tick(start + 1);
+        assertEquals(3, executed.size());
+        assertTrue(executed.contains(-500L) && executed.contains(0L));
+    }
+
+    @Test
+    void neverRunsBeforeDeadline() {
+        //tick为10毫秒，到期时间向上取整
+        TimingWheel wheel = new TimingWheel(10, 100);
+        List<Long> executed = new ArrayList<>();
+        wheel.schedule(1001, () -> executed.add(1001L));
+        wheel.schedule(1010, () -> executed.add(1010L));
+        wheel.schedule(1019, () -> executed.add(1019L));
+        wheel.tick(100);
+        assertTrue(executed.isEmpty());
+        wheel.tick(101);
+        assertEquals(2, executed.size());
+        assertTrue(executed.contains(1001L) && executed.contains(1010L));
+        wheel.tick(102);
+        assertEquals(3, executed.size());
+    }
+
+    @Test
+    void taskRescheduledFromTaskRunsOnNextTick() {
+        TimingWheel wheel = new TimingWheel(1, 10);
+        int[] runs = {0};
+        Runnable[] task = new Runnable[1];
+        //一直在过去的时间重新安排自己
+        task[0] = () -> {
+            runs[0]++;
+            wheel.schedule(0, task[0]);
+        };
+        wheel.schedule(11, task[0]);
+        wheel.tick(11);
+        assertEquals(1, runs[0]);
+        wheel.tick(12);
+        assertEquals(2, runs[0]);
+        wheel.tick(15);
+        assertEquals(3, runs[0]);
+    }
+
+    @Test
+    void cascadesAcrossLevelBoundaries() {
+        //起点紧挨着第2层的边界，到期时间跨过各层的边界
+        long start = 3 * LEVEL2 - 3;
+        long[] offsets = {1, 2, 3, 4, LEVEL1 - 1, LEVEL1, LEVEL1 + 1, LEVEL1 + 3,
+                LEVEL2 - 1, LEVEL2, LEVEL2 + 1, LEVEL2 + 3, 2 * LEVEL2 + 17,
+                LEVEL3 - 1, LEVEL3, LEVEL3 + 3, LEVEL3 + LEVEL2 + LEVEL1 + 1,
+                LEVEL4 - 1, LEVEL4 + 3, LEVEL4 + LEVEL3 + 5};
+        TimingWheel wheel = new TimingWheel(1, start);
+        long[] now = {start};
+        long[] executedAt = new long[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            schedule(wheel, executedAt, i, start + offsets[i], now);
+        }
+        long end = start + offsets[offsets.length - 1];
+        for (long tick = start; tick <= end; tick++) {
+            now[0] = tick;
+            wheel.tick(tick);
+        }
+        for (int i = 0; i < offsets.length; i++) {
+            assertEquals(start + offsets[i], executedAt[i], "offset " + offsets[i]);
+        }
+    }
+
+    @Test
+    void deadlineBeyondHighestLevelRunsOnTime() {
+        long start = 5 * LEVEL4 + 7;
+        long[] offsets = {RANGE - 1, RANGE, RANGE + LEVEL4 + 11};
+        TimingWheel wheel = new TimingWheel(1, start);
+        long[] now = {start};
+        long[] executedAt = new long[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            schedule(wheel, executedAt, i, start + offsets[i], now);
+        }
+        long end = start + offsets[offsets.length - 1];
+        for (long tick = start; tick <= end; tick++) {
+            now[0] = tick;
+            wheel.tick(tick);
+        }
+        for (int i = 0; i < offsets.length; i++) {
+            assertEquals(start + offsets[i], executedAt[i], "offset " + offsets[i]);
+        }
+    }
+
+    @Test
+    void catchesUpAfterFallingBehind() {
+        long start = 100;
+        TimingWheel wheel = new TimingWheel(10, start);
+        List<Integer> executed = new ArrayList<>();
+        //tick为10毫秒
+        wheel.schedule((start + 5) * 10, () -> executed.add(1));
+        wheel.schedule((start + LEVEL2 + 5) * 10 - 9, () -> executed.add(2));
+        wheel.tick(start);
+        //一次落后很多个tick
+        wheel.tick(start + LEVEL2 + 4);
+        assertEquals(1, executed.size());
+        wheel.tick(start + LEVEL2 + 5);
+        assertEquals(2, executed.size());
+    }
+
+    @Test
+    void failingTaskDoesNotStopOthers() {
+        TimingWheel wheel = new TimingWheel(1, 0);
+        List<Integer> executed = new ArrayList<>();
+        wheel.schedule(3, () -> {
+            throw new IllegalStateException("task");
+        });
+        wheel.schedule(3, () -> executed.add(3));
+        runUntil(wheel, 0, 3);
+        assertEquals(1, executed.size());
+    }
+}
@@ -0,0 +1,157 @@
+package com.runaccepted.jwt.api.session;
+
+import com.runaccepted.jwt.api.concurrent.TimingWheel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 进程内会话存储与redis脚本相同的语义，时钟和时间轮都由测试推进
+ */
+class MemorySessionStoreTest {
+
+    private static final String ID = "1";
+
+    private static final long TICK = 10;
+
+    private static final long START = 1_000_000;
+
+    private final AtomicLong clock = new AtomicLong(START);
+
+    private final TimingWheel wheel = new TimingWheel(TICK, START / TICK);
+
+    private final MemorySessionStore store = new MemorySessionStore(wheel, clock::get);
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    /**
+     * 与后台线程相同：时间轮推进到当前时间所在的tick
+     */
+    private void advanceTo(long millis) {
+        clock.set(millis);
+        wheel.tick(millis / TICK);
+    }
+
+    @Test
+    void loginIsRejectedWhileLoggedIn() {
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "t1", 0, 1000, false));
+        assertEquals(SessionStore.LOGGED_IN, store.login(ID, "admin", "t2", 0, 1000, false));
+        assertEquals(SessionStore.ALLOW, store.check(ID, "g", "t1", 0));
+        assertEquals(SessionStore.MISMATCH, store.check(ID, "g", "t2", 0));
+
+        //免登录时间过后可以再次登录
+        clock.addAndGet(1000);
+        assertEquals(SessionStore.MISMATCH, store.check(ID, "g", "t1", 0));
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "t2", 0, 1000, false));
+        assertEquals(SessionStore.ALLOW, store.check(ID, "g", "t2", 0));
+    }
+
+    @Test
+    void forceLoginReplacesActiveToken() {
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "t1", 0, 1000, false));
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "t2", 0, 1000, true));
+        assertEquals(SessionStore.MISMATCH, store.check(ID, "g", "t1", 0));
+        assertEquals(SessionStore.ALLOW, store.check(ID, "g", "t2", 0));
+    }
+
+    @Test
+    void staleVersionIsRejected() {
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "t1", 0, 1000, false));
+        assertEquals(1, store.revoke(ID, 5000));
+        assertEquals(SessionStore.LOGGED_OUT, store.check(ID, "g", "t1", 0));
+
+        //按登出前的版本签发的token不能写入
+        assertEquals(SessionStore.STALE, store.login(ID, "admin", "t2", 0, 1000, true));
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "t3", 1, 1000, false));
+        assertEquals(SessionStore.ALLOW, store.check(ID, "g", "t3", 1));
+        assertEquals(SessionStore.LOGGED_OUT, store.check(ID, "g", "t3", 0));
+    }
+
+    @Test
+    void versionAheadIsRejected() {
+        assertEquals(1, store.revoke(ID, 1000));
+        assertEquals(2, store.revoke(ID, 1000));
+        clock.addAndGet(1000);
+        //版本已过期重置为0，按过期前的版本签发的token不能写入，否则之后登出加一后仍然有效
+        assertEquals(SessionStore.STALE, store.login(ID, "admin", "t1", 2, 1000, false));
+        assertEquals(0, store.version(ID));
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "t2", 0, 1000, false));
+    }
+
+    @Test
+    void versionExpiryResetsToZero() {
+        assertEquals(1, store.revoke(ID, 1000));
+        assertEquals(2, store.revoke(ID, 1000));
+        assertEquals(2, store.version(ID));
+
+        clock.addAndGet(999);
+        assertEquals(2, store.version(ID));
+        clock.addAndGet(1);
+        assertEquals(0, store.version(ID));
+        //版本过期后从0开始，按版本0签发的token可以登录
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "t1", 0, 1000, false));
+        assertEquals(1, store.revoke(ID, 1000));
+    }
+
+    @Test
+    void blacklistExpires() {
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "t1", 0, 5000, false));
+        store.refresh(ID, "g1", "admin", "t2", 500);
+        assertEquals(SessionStore.ALLOW, store.check(ID, "g2", "t2", 0));
+
+        //使用同一group的token在黑名单中
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "t3", 0, 5000, true));
+        assertEquals(SessionStore.LOGGED_OUT, store.check(ID, "g1", "t3", 0));
+
+        clock.addAndGet(500);
+        assertEquals(SessionStore.ALLOW, store.check(ID, "g1", "t3", 0));
+    }
+
+    @Test
+    void blacklistIsKeptUntilExpires() {
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "t1", 0, 5000, false));
+        //过期时间不在tick的边界上
+        store.refresh(ID, "g1", "admin", "t2", 25);
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "t3", 0, 5000, true));
+        for (long now = START; now < START + 25; now++) {
+            advanceTo(now);
+            assertEquals(SessionStore.LOGGED_OUT, store.check(ID, "g1", "t3", 0), "at +" + (now - START));
+        }
+        advanceTo(START + 25);
+        assertEquals(SessionStore.ALLOW, store.check(ID, "g1", "t3", 0));
+    }
+
+    @Test
+    void expiredSessionsAreRemoved() {
+        for (int i = 0; i < 100; i++) {
+            store.login(String.valueOf(i), "admin", "t", 0, 25, false);
+        }
+        store.revoke("revoked", 30);
+        assertEquals(101, store.size());
+
+        for (long now = START; now < START + 25; now++) {
+            advanceTo(now);
+            assertEquals(101, store.size(), "at +" + (now - START));
+        }
+        //过期时间向上取整到tick（+30）时删除
+        advanceTo(START + 30);
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void earlyExpiryIsRescheduled() {
+        store.login(ID, "admin", "t", 0, 25, false);
+        //时间轮先于时钟到达（时钟回拨），记录未过期时保留并重新安排
+        clock.set(START + 10);
+        wheel.tick((START + 30) / TICK);
+        assertEquals(1, store.size());
+        advanceTo(START + 40);
+        assertEquals(0, store.size());
+    }
+}
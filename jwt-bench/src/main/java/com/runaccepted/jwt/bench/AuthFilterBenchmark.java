@@ -0,0 +1,76 @@
+package com.runaccepted.jwt.bench;
+
+import com.runaccepted.jwt.api.constant.JwtConstant;
+import com.runaccepted.jwt.gateway.filter.AuthContext;
+import com.runaccepted.jwt.gateway.filter.AuthFilter;
+import com.runaccepted.jwt.gateway.utils.JwtUtils;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 网关AuthFilter一次完整的鉴权，redis由内存替身代替，只计算网关自身的开销
+ * nearCacheSize=0 为每次请求都执行auth_check脚本
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthFilterBenchmark {
+
+    private static final GatewayFilterChain CHAIN = exchange -> Mono.empty();
+
+    @Param({"0", "100000"})
+    private long nearCacheSize;
+
+    private AuthFilter filter;
+
+    private String token;
+
+    private String otherToken;
+
+    @Setup
+    public void setup() {
+        JwtUtils jwtUtils = BenchSupport.gatewayJwtUtils(100000, 5000);
+        InMemoryRedisTemplate redisTemplate = new InMemoryRedisTemplate();
+        filter = BenchSupport.authFilter(jwtUtils, redisTemplate, nearCacheSize);
+
+        token = jwtUtils.generateToken(BenchSupport.admin());
+        otherToken = jwtUtils.generateToken(BenchSupport.admin());
+        AuthContext context = jwtUtils.getAuthContext(token);
+        redisTemplate.values.put(String.format(InMemoryRedisTemplate.SESSION, context.getId()), token);
+    }
+
+    @Benchmark
+    public MockServerWebExchange allowed() {
+        return filter(token);
+    }
+
+    /**
+     * 同一用户在别处登录后，旧token被拒绝
+     */
+    @Benchmark
+    public MockServerWebExchange mismatch() {
+        return filter(otherToken);
+    }
+
+    @Benchmark
+    public MockServerWebExchange noToken() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/jwt-client/getInfo"));
+        filter.filter(exchange, CHAIN).block();
+        return exchange;
+    }
+
+    private MockServerWebExchange filter(String token) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/jwt-client/getInfo")
+                .header(JwtConstant.tokenHeader, token));
+        filter.filter(exchange, CHAIN).block();
+        return exchange;
+    }
+}
@@ -0,0 +1,132 @@
+package com.runaccepted.jwt.bench;
+
+import com.runaccepted.jwt.api.entity.Admin;
+import com.runaccepted.jwt.api.event.AuthEventLog;
+import com.runaccepted.jwt.gateway.filter.AuthFilter;
+import com.runaccepted.jwt.gateway.metrics.AuthMetrics;
+import com.runaccepted.jwt.gateway.session.ActiveSessionCache;
+import com.runaccepted.jwt.gateway.session.RevocationCutoff;
+import com.runaccepted.jwt.gateway.session.RevokedGroupTable;
+import com.runaccepted.jwt.gateway.session.SessionVerifier;
+import com.runaccepted.jwt.gateway.utils.VerifiedTokenCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * 不启动spring容器，按application.properties中的配置手动组装被测对象
+ */
+final class BenchSupport {
+
+    static final String SECRET = "online-runaccepted";
+
+    static final long EXPIRE = 120000L;
+
+    private BenchSupport() {
+    }
+
+    static Admin admin() {
+        Admin admin = new Admin();
+        admin.setId("1249426830067269633");
+        admin.setUsername("admin");
+        admin.setPassword("123456");
+        return admin;
+    }
+
+    static MockEnvironment environment() {
+        return new MockEnvironment().withProperty("jwt.secret.key", SECRET);
+    }
+
+    static com.runaccepted.jwt.client.utils.JwtUtils clientJwtUtils() {
+        com.runaccepted.jwt.client.utils.JwtUtils jwtUtils = new com.runaccepted.jwt.client.utils.JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "SUBJECT", "edu-admin");
+        ReflectionTestUtils.setField(jwtUtils, "APPSECRET", SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "EXPIRE", EXPIRE);
+        ReflectionTestUtils.setField(jwtUtils, "holdType", 12);
+        ReflectionTestUtils.setField(jwtUtils, "holdTime", 10);
+        ReflectionTestUtils.setField(jwtUtils, "environment", environment());
+        jwtUtils.init();
+        return jwtUtils;
+    }
+
+    /**
+     * @param verifiedCacheSize 已验签token缓存大小，0为不缓存
+     * @param refreshShare      重新签发的token共享时间，0为每次都签发
+     */
+    static com.runaccepted.jwt.gateway.utils.JwtUtils gatewayJwtUtils(long verifiedCacheSize, long refreshShare) {
+        VerifiedTokenCache verifiedTokenCache = new VerifiedTokenCache();
+        ReflectionTestUtils.setField(verifiedTokenCache, "maximumSize", verifiedCacheSize);
+        verifiedTokenCache.init();
+
+        com.runaccepted.jwt.gateway.utils.JwtUtils jwtUtils = new com.runaccepted.jwt.gateway.utils.JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "SUBJECT", "edu-admin");
+        ReflectionTestUtils.setField(jwtUtils, "APPSECRET", SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "EXPIRE", EXPIRE);
+        ReflectionTestUtils.setField(jwtUtils, "holdType", 12);
+        ReflectionTestUtils.setField(jwtUtils, "holdTime", 10);
+        ReflectionTestUtils.setField(jwtUtils, "refreshWindow", 30000L);
+        ReflectionTestUtils.setField(jwtUtils, "refreshJitter", 10000L);
+        ReflectionTestUtils.setField(jwtUtils, "refreshShare", refreshShare);
+        ReflectionTestUtils.setField(jwtUtils, "verifiedTokenCache", verifiedTokenCache);
+        ReflectionTestUtils.setField(jwtUtils, "environment", environment());
+        jwtUtils.init();
+        return jwtUtils;
+    }
+
+    /**
+     * 与网关默认配置相同，放行的请求每100个记录1个
+     */
+    static AuthEventLog authEventLog() {
+        try {
+            return new AuthEventLog(Files.createTempFile("auth-events", ".log"), 8192, 100);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param nearCacheSize 本地活跃token缓存大小，0为每次都执行redis脚本
+     */
+    static AuthFilter authFilter(com.runaccepted.jwt.gateway.utils.JwtUtils jwtUtils,
+                                 InMemoryRedisTemplate redisTemplate, long nearCacheSize) {
+        ActiveSessionCache activeSessionCache = new ActiveSessionCache();
+        ReflectionTestUtils.setField(activeSessionCache, "channel", "JWT_SESSION_CHANNEL");
+        ReflectionTestUtils.setField(activeSessionCache, "maximumSize", nearCacheSize);
+        ReflectionTestUtils.setField(activeSessionCache, "ttl", 5000L);
+        ReflectionTestUtils.setField(activeSessionCache, "redisTemplate", redisTemplate);
+        activeSessionCache.init();
+
+        SessionVerifier sessionVerifier = new SessionVerifier();
+        ReflectionTestUtils.setField(sessionVerifier, "jwtBlacklist", InMemoryRedisTemplate.BLACKLIST);
+        ReflectionTestUtils.setField(sessionVerifier, "jwtSession", InMemoryRedisTemplate.SESSION);
+        ReflectionTestUtils.setField(sessionVerifier, "jwtVersion", InMemoryRedisTemplate.VERSION);
+        ReflectionTestUtils.setField(sessionVerifier, "jwtToken", "JWT_TOKEN");
+        ReflectionTestUtils.setField(sessionVerifier, "jwtTokenLegacy", false);
+        ReflectionTestUtils.setField(sessionVerifier, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(sessionVerifier, "activeSessionCache", activeSessionCache);
+        ReflectionTestUtils.setField(sessionVerifier, "revokedGroups", new RevokedGroupTable(100_000, false));
+        sessionVerifier.init();
+
+        AuthMetrics authMetrics = new AuthMetrics();
+        ReflectionTestUtils.setField(authMetrics, "meterRegistry", new SimpleMeterRegistry());
+        authMetrics.init();
+
+        AuthFilter filter = new AuthFilter();
+        filter.setAuthEventLog(authEventLog());
+        filter.setUris(Collections.singletonList("/jwt-client/login"));
+        filter.setChecktoken(Arrays.asList("/jwt-client/token/refresh", "/jwt-client/relogin"));
+        filter.setJwtUtils(jwtUtils);
+        filter.setSessionVerifier(sessionVerifier);
+        //不订阅，截止时间为0
+        filter.setRevocationCutoff(new RevocationCutoff());
+        filter.setAuthMetrics(authMetrics);
+        filter.compileRoutes();
+        return filter;
+    }
+}
@@ -0,0 +1,30 @@
+package com.runaccepted.jwt.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * java -jar jwt-bench/target/benchmarks.jar [正则]
+ *
+ * 每个基准分别以单线程和CPU核数个线程运行，附带GC分配统计（gc.alloc.rate.norm）
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackage().getName() + ".*";
+        int[] threads = {1, Runtime.getRuntime().availableProcessors()};
+        for (int thread : threads) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(thread)
+                    .addProfiler(GCProfiler.class);
+            new Runner(options.build()).run();
+            if (threads[0] == threads[1]) {
+                break;
+            }
+        }
+    }
+}
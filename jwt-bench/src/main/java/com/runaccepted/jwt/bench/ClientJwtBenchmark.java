@@ -0,0 +1,44 @@
+package com.runaccepted.jwt.bench;
+
+import com.runaccepted.jwt.api.codec.JwtPayload;
+import com.runaccepted.jwt.client.utils.JwtUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * jwt-client 签发、解析、刷新token
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientJwtBenchmark {
+
+    private JwtUtils jwtUtils;
+
+    private String token;
+
+    @Setup
+    public void setup() {
+        jwtUtils = BenchSupport.clientJwtUtils();
+        token = jwtUtils.generateToken(BenchSupport.admin());
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtils.generateToken(BenchSupport.admin());
+    }
+
+    @Benchmark
+    public JwtPayload getPayloadFromToken() {
+        return jwtUtils.getPayloadFromToken(token);
+    }
+
+    @Benchmark
+    public String refreshToken() {
+        return jwtUtils.refreshToken(token);
+    }
+}
@@ -0,0 +1,54 @@
+package com.runaccepted.jwt.bench;
+
+import com.runaccepted.jwt.gateway.filter.AuthContext;
+import com.runaccepted.jwt.gateway.utils.JwtUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * jwt-gateway 解析、刷新token
+ * verifiedCacheSize=0 为每次都验签，refreshShare=0 为每次都重新签发
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GatewayJwtBenchmark {
+
+    @Param({"0", "100000"})
+    private long verifiedCacheSize;
+
+    @Param({"0", "5000"})
+    private long refreshShare;
+
+    private JwtUtils jwtUtils;
+
+    private String token;
+
+    private AuthContext context;
+
+    @Setup
+    public void setup() {
+        jwtUtils = BenchSupport.gatewayJwtUtils(verifiedCacheSize, refreshShare);
+        token = jwtUtils.generateToken(BenchSupport.admin());
+        context = jwtUtils.getAuthContext(token);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtils.generateToken(BenchSupport.admin());
+    }
+
+    @Benchmark
+    public AuthContext getAuthContext() {
+        return jwtUtils.getAuthContext(token);
+    }
+
+    @Benchmark
+    public String refreshToken() {
+        return jwtUtils.refreshToken(context);
+    }
+}
@@ -0,0 +1,63 @@
+package com.runaccepted.jwt.bench;
+
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveRedisCallback;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Flux;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 内存中的redis替身，只实现网关用到的 auth_check.lua、预加载脚本和订阅
+ */
+class InMemoryRedisTemplate extends ReactiveStringRedisTemplate {
+
+    static final String BLACKLIST = "JWT_BLACKLIST::{%s}:%s";
+    static final String SESSION = "JWT_SESSION::{%s}";
+    static final String VERSION = "JWT_VERSION::{%s}";
+
+    final Map<String, String> values = new ConcurrentHashMap<>();
+
+    InMemoryRedisTemplate() {
+        super((ReactiveRedisConnectionFactory) Proxy.newProxyInstance(
+                InMemoryRedisTemplate.class.getClassLoader(),
+                new Class<?>[]{ReactiveRedisConnectionFactory.class},
+                (proxy, method, args) -> {
+                    throw new UnsupportedOperationException(method.getName());
+                }));
+    }
+
+    /**
+     * 与 scripts/auth_check.lua 的逻辑相同
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Flux<T> execute(RedisScript<T> script, List<String> keys, List<?> args) {
+        String version = values.get(keys.get(2));
+        long status;
+        if (version != null && Long.parseLong((String) args.get(1)) < Long.parseLong(version)) {
+            status = 1;
+        } else if (values.containsKey(keys.get(0))) {
+            status = 1;
+        } else {
+            String active = values.get(keys.get(1));
+            status = active == null ? 3 : active.equals(args.get(0)) ? 0 : 2;
+        }
+        return Flux.just((T) Long.valueOf(status));
+    }
+
+    @Override
+    public <T> Flux<T> execute(ReactiveRedisCallback<T> action) {
+        return Flux.empty();
+    }
+
+    @Override
+    public Flux<? extends ReactiveSubscription.Message<String, String>> listenToChannel(String... channels) {
+        return Flux.never();
+    }
+}
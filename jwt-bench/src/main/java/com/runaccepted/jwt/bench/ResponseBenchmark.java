@@ -0,0 +1,44 @@
+package com.runaccepted.jwt.bench;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.runaccepted.jwt.api.to.R;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * R的序列化，每次新建ObjectMapper与共用一个ObjectMapper
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private String token;
+
+    @Setup
+    public void setup() {
+        token = BenchSupport.clientJwtUtils().generateToken(BenchSupport.admin());
+    }
+
+    @Benchmark
+    public byte[] errorNewMapper() throws JsonProcessingException {
+        return new ObjectMapper().writeValueAsBytes(R.error().code(50012).message("admin 已在别处登录，请重新登录"));
+    }
+
+    @Benchmark
+    public byte[] errorSharedMapper() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(R.error().code(50012).message("admin 已在别处登录，请重新登录"));
+    }
+
+    @Benchmark
+    public byte[] tokenSharedMapper() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(R.ok().data("token", token));
+    }
+}
@@ -0,0 +1,67 @@
+package com.runaccepted.jwt.client.config;
+
+import com.runaccepted.jwt.api.concurrent.VirtualThreads;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * 虚拟线程模式（jwt.threads.virtual=true，见application-virtual.properties）
+ *
+ * tomcat的请求以及mvc的异步请求（批量注销的流式响应）都在虚拟线程中执行，
+ * 阻塞在redis上的请求不再占用平台线程；并发的上限改由redis连接池（max-active）决定，
+ * 所以关闭lettuce的共享连接，每个命令都从有界的连接池中取得连接（连接池见VirtualThreadEnvironment）。
+ * 运行的JDK不支持虚拟线程时保留tomcat的平台线程池和lettuce的共享连接
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "jwt.threads.virtual", havingValue = "true")
+public class VirtualThreadConfiguration {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandler(){
+        if (!VirtualThreads.isSupported()){
+            log.warn("当前JDK {} 不支持虚拟线程，使用平台线程池",System.getProperty("java.version"));
+            return protocolHandler -> {};
+        }
+        log.info("tomcat请求使用虚拟线程执行");
+        return protocolHandler -> protocolHandler.setExecutor(VirtualThreads.newPerTaskExecutor());
+    }
+
+    //mvc异步请求的线程池
+    @Bean
+    public WebMvcConfigurer virtualThreadAsyncSupport(){
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                if (VirtualThreads.isSupported()){
+                    configurer.setTaskExecutor(new TaskExecutorAdapter(VirtualThreads.newPerTaskExecutor()));
+                }
+            }
+        };
+    }
+
+    @Bean
+    public static BeanPostProcessor dedicatedRedisConnections(){
+        if (!VirtualThreads.isSupported()){
+            return new BeanPostProcessor() {};
+        }
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+                if (bean instanceof LettuceConnectionFactory){
+                    ((LettuceConnectionFactory) bean).setShareNativeConnection(false);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,45 @@
+package com.runaccepted.jwt.client.config;
+
+import com.runaccepted.jwt.api.concurrent.VirtualThreads;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 虚拟线程模式下的redis连接池
+ *
+ * jwt.threads.redis-pool.* 只在jwt.threads.virtual=true且JDK支持虚拟线程时
+ * 作为spring.redis.lettuce.pool.*生效；否则保持原来的共享连接，不创建连接池。
+ * 在配置文件加载之后执行，显式配置的spring.redis.lettuce.pool.*优先
+ */
+public class VirtualThreadEnvironment implements EnvironmentPostProcessor, Ordered {
+
+    private static final String[] POOL_KEYS = {"max-active", "max-idle", "min-idle", "max-wait"};
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (!environment.getProperty("jwt.threads.virtual", Boolean.class, false) || !VirtualThreads.isSupported()) {
+            return;
+        }
+        Map<String, Object> pool = new HashMap<>();
+        for (String key : POOL_KEYS) {
+            String value = environment.getProperty("jwt.threads.redis-pool." + key);
+            if (value != null) {
+                pool.put("spring.redis.lettuce.pool." + key, value);
+            }
+        }
+        if (!pool.isEmpty()) {
+            environment.getPropertySources().addLast(new MapPropertySource("virtualThreadRedisPool", pool));
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+}
@@ -0,0 +1,123 @@
+package com.runaccepted.jwt.client.controller;
+
+import com.runaccepted.jwt.api.event.AuthEventLog;
+import com.runaccepted.jwt.api.event.AuthEventType;
+import com.runaccepted.jwt.api.session.SessionStore;
+import com.runaccepted.jwt.api.to.RevokeRequest;
+import com.runaccepted.jwt.client.utils.AdminKey;
+import com.runaccepted.jwt.client.utils.JwtUtils;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * 运维接口，直接访问jwt-client，请求头X-Admin-Key与jwt.admin.key一致才可调用
+ */
+@RestController
+@Profile("!reactive")
+@RequestMapping("/jwt-client/admin")
+@Slf4j
+public class AdminController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    //issuedBefore允许超前的时钟偏差，毫秒；更晚的截止时间会使之后签发的token也失效
+    static final long MAX_CLOCK_SKEW = 5000;
+
+    @Autowired
+    JwtUtils jwtUtils;
+
+    @Autowired
+    SessionStore sessionStore;
+
+    @Autowired
+    AuthEventLog authEventLog;
+
+    @Autowired
+    AdminKey adminKey;
+
+    //每批pipeline的用户数
+    @Value("${jwt.revoke.chunk}")
+    private int chunk;
+
+    @PostConstruct
+    public void init(){
+        if (chunk<=0){
+            throw new IllegalArgumentException("jwt.revoke.chunk应大于0: "+chunk);
+        }
+    }
+
+    /**
+     * 批量注销，每写完一批返回一行进度（ndjson）
+     * {"revoked":500,"total":2000}
+     * ...
+     * {"revoked":2000,"total":2000,"issuedBefore":1589212345678,"millis":85}
+     */
+    @ApiOperation(value = "批量注销")
+    @PostMapping("/revoke")
+    public ResponseEntity<StreamingResponseBody> revoke(@RequestHeader(value = AdminKey.HEADER, required = false) String key,
+                                                        @RequestBody RevokeRequest revokeRequest){
+
+        if (!adminKey.matches(key)){
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        Long issuedBefore = revokeRequest.getIssuedBefore();
+        //截止时间（毫秒）不能晚于当前时间，否则之后登录签发的token也全部失效
+        if (issuedBefore!=null && issuedBefore>System.currentTimeMillis()+MAX_CLOCK_SKEW){
+            log.warn("批量注销截止时间晚于当前时间 {}",issuedBefore);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        //去重，保持顺序
+        List<String> ids = revokeRequest.getIds()==null
+                ? Collections.emptyList()
+                : new ArrayList<>(new LinkedHashSet<>(revokeRequest.getIds()));
+        //版本号和截止时间保留一个免登录时长
+        long expired = jwtUtils.generateLoginDate().getTime() - new Date().getTime();
+
+        StreamingResponseBody body = out -> {
+            long start = System.nanoTime();
+            if (issuedBefore!=null){
+                sessionStore.revokeIssuedBefore(issuedBefore,expired);
+                authEventLog.publish(AuthEventType.LOGOUT,0,null,null,"issuedBefore="+issuedBefore);
+            }
+            int total = ids.size();
+            for (int from = 0; from < total; from += chunk) {
+                List<String> batch = ids.subList(from, Math.min(total, from + chunk));
+                sessionStore.revokeAll(batch,expired);
+                for (String id : batch) {
+                    authEventLog.publish(AuthEventType.LOGOUT,0,id,null,"admin");
+                }
+                write(out,"{\"revoked\":"+(from+batch.size())+",\"total\":"+total+"}");
+            }
+            long millis = (System.nanoTime()-start)/1_000_000;
+            write(out,"{\"revoked\":"+total+",\"total\":"+total
+                    +(issuedBefore==null?"":",\"issuedBefore\":"+issuedBefore)
+                    +",\"millis\":"+millis+"}");
+            log.warn("批量注销 用户数:{} 截止时间:{} 耗时:{}ms",total,issuedBefore,millis);
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    private static void write(OutputStream out, String line) throws IOException {
+        out.write((line+"\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+}
@@ -2,24 +2,27 @@ package com.runaccepted.jwt.client.controller;
 
 import com.runaccepted.jwt.api.constant.JwtConstant;
 import com.runaccepted.jwt.api.entity.Admin;
+import com.runaccepted.jwt.api.event.AuthEventLog;
+import com.runaccepted.jwt.api.event.AuthEventType;
+import com.runaccepted.jwt.api.session.SessionStore;
 import com.runaccepted.jwt.api.to.R;
 import com.runaccepted.jwt.client.utils.JwtUtils;
-import io.jsonwebtoken.Claims;
+import com.runaccepted.jwt.client.utils.LoginAccounts;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.context.annotation.Profile;
 import org.springframework.web.bind.annotation.*;
 
+import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
-import java.text.SimpleDateFormat;
+import java.time.Duration;
 import java.util.Date;
-import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/jwt-client")
 @Slf4j
 public class ClientController {
@@ -27,63 +30,81 @@ public class ClientController {
     @Autowired
     JwtUtils jwtUtils;
 
-    @Value("${login.id}")
-    private String id;
-
-    @Value("${login.username}")
-    private String username;
-
-    @Value("${login.password}")
-    private String password;
-
-    @Value("${jwt.username.format}")
-    private String jwtUsername;
+    @Autowired
+    LoginAccounts loginAccounts;
 
-    @Value("${jwt.blacklist.format}")
-    private String jwtBlacklist;
+    @Autowired
+    SessionStore sessionStore;
 
-    @Value("${jwt.token.format}")
-    private String jwtToken;
+    @Autowired
+    MeterRegistry meterRegistry;
 
     @Autowired
-    StringRedisTemplate redisTemplate;
+    AuthEventLog authEventLog;
+
+    //各接口中每次redis操作的耗时
+    private Timer loginRedis;
+    private Timer reloginRedis;
+    private Timer logoutRedis;
+    private Timer refreshRedis;
+
+    @PostConstruct
+    public void init(){
+        loginRedis = redisTimer("login");
+        reloginRedis = redisTimer("relogin");
+        logoutRedis = redisTimer("logout");
+        refreshRedis = redisTimer("refresh");
+    }
+
+    private Timer redisTimer(String endpoint){
+        return Timer.builder("jwt.client.redis")
+                .description("redis操作耗时")
+                .tag("endpoint",endpoint)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(50_000))
+                .maximumExpectedValue(Duration.ofSeconds(5))
+                .register(meterRegistry);
+    }
 
     @ApiOperation(value = "登录")
     @PostMapping("/login")
     public R login(@RequestBody Admin admin){
 
-        if (!admin.equal(username,password)) {
+        String accountId = loginAccounts.authenticate(admin);
+        if (accountId == null) {
 
+            authEventLog.publish(AuthEventType.REJECT,20001,null,null,admin.getUsername());
             return R.error().message("账号或密码错误");
 
         }else{
 
-            admin.setId(id);
-            String key = String.format(jwtUsername,admin.getId());
-            log.error("redis key: {}",key);
-            //判断redis中是否存在该用户名
-            String name = (String) redisTemplate.opsForValue().get(key);
-            if (!StringUtils.isEmpty(name)){
-                return R.error().message(name+" 已经登录！");
-            }
-            //成功生成token
-            String token= jwtUtils.generateToken(admin);
+            admin.setId(accountId);
             //用户名有效时间 - 用户免登录时间
             //得到jwt中的截止时间
             long time=jwtUtils.generateLoginDate().getTime();
 
             long expired = time-new Date().getTime();
 
-            log.error("原始数据: {} redis {} 截止时间: {}",time,key,
-                    new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(time)));
-            //信息放入redis - set key value EX 10
-            redisTemplate.opsForValue().set(key,admin.getUsername(),expired,TimeUnit.MILLISECONDS);
-            //存当前id对应正在使用的token
-            //hset key field value
-            redisTemplate.opsForHash().put(jwtToken,admin.getId(),token);
-            log.error("redis hashKey: {} field: {} token:{}",jwtToken,admin.getId(),token);
-           return R.ok().data("token",token);
-
+            //按本节点记录的token版本预先签发，不读取redis
+            long version = sessionStore.version(admin.getId());
+            //版本校验、单端登录判断、写入用户名和活跃token、通知网关由登录脚本一次完成
+            //版本不同（其他节点登出/重新登录、签发期间被加一）时脚本返回当前版本，按它重新签发
+            for (int i = 0; i < 3; i++) {
+                long tokenVersion = version;
+                String token = jwtUtils.generateToken(admin,tokenVersion);
+                long status = loginRedis.record(() -> sessionStore.login(admin.getId(),admin.getUsername(),
+                        token,tokenVersion,expired,false));
+                if (status==SessionStore.LOGGED_IN){
+                    authEventLog.publish(AuthEventType.REJECT,20001,admin.getId(),null,admin.getUsername());
+                    return R.error().message(admin.getUsername()+" 已经登录！");
+                }
+                if (status==SessionStore.CREATED){
+                    authEventLog.publish(AuthEventType.LOGIN,0,admin.getId(),null,admin.getUsername());
+                    return R.ok().data("token",token);
+                }
+                version = sessionStore.version(admin.getId());
+            }
+            return R.error().message("登录状态已变更，请重新登录");
         }
     }
 
@@ -91,46 +112,29 @@ public class ClientController {
     @PostMapping("/relogin")
     public R relogin(@RequestBody Admin admin,HttpServletRequest request){
 
-        if (!admin.equal(username,password)) {
+        String accountId = loginAccounts.authenticate(admin);
+        if (accountId == null) {
 
+            authEventLog.publish(AuthEventType.REJECT,20001,null,null,admin.getUsername());
             return R.error().message("账号或密码错误");
 
         }else{
-            admin.setId(id);
-            String token = request.getHeader(JwtConstant.tokenHeader);
-            //删除用户名
-            String userKey = String.format(jwtUsername,admin.getId());
-            redisTemplate.delete(userKey);
-            //删除用户token
-            redisTemplate.opsForHash().delete(jwtToken,id);
-            //token放入黑名单
-            String group = jwtUtils.getGroupFromToken(token);
+            admin.setId(accountId);
+            //删除用户名和用户token，用户的token版本加一，之前签发的token全部失效
             long time= jwtUtils.generateLoginDate().getTime();
             long expired = time - new Date().getTime();
-            log.error("黑名单 - 原始数据: {} redis {} 截止时间: {}",time,userKey,
-                    new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(time)));
-
-            String blackKey = String.format(jwtBlacklist,group);
-            //可能token已过期
-            if(expired>0) {
-                redisTemplate.opsForValue().set(blackKey, token, expired, TimeUnit.MILLISECONDS);
-            }
+            long version = reloginRedis.record(() -> sessionStore.revoke(admin.getId(),expired));
 
             //重新生成用户名有效时间 - 用户免登录时间
-            admin.setId(id);
-            String newToken = jwtUtils.generateToken(admin);
-            //得到jwt中的截止时间
-            time=jwtUtils.generateLoginDate().getTime();
-            expired = time-new Date().getTime();
-
-            log.error("重新登录 原始数据-: {} redis {} 截止时间: {}",time,userKey,
-                    new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(time)));
-            //信息放入redis - set key value EX 10
-            redisTemplate.opsForValue().set(userKey,admin.getUsername(),expired,TimeUnit.MILLISECONDS);
-            //存当前id对应正在使用的token
-            //hset key field value
-            redisTemplate.opsForHash().put(jwtToken,admin.getId(),newToken);
-            log.error("redis hashKey: {} field: {} token:{}",jwtToken,admin.getId(),token);
+            String newToken = jwtUtils.generateToken(admin,version);
+
+            //写入用户名和活跃token，覆盖期间并发登录写入的值
+            long status = reloginRedis.record(() -> sessionStore.login(admin.getId(),admin.getUsername(),
+                    newToken,version,expired,true));
+            if (status!=SessionStore.CREATED){
+                return R.error().message("登录状态已变更，请重新登录");
+            }
+            authEventLog.publish(AuthEventType.RELOGIN,0,admin.getId(),null,admin.getUsername());
             return R.ok().data("token",newToken);
         }
     }
@@ -141,7 +145,7 @@ public class ClientController {
 
         String token = request.getHeader(JwtConstant.tokenHeader);
 
-        log.info("请求头 {}",token);
+        log.debug("请求头 {}",token);
 
         String username = jwtUtils.getUserNameFromToken(token);
 
@@ -154,25 +158,15 @@ public class ClientController {
 
         String token = request.getHeader(JwtConstant.tokenHeader);
 
-        log.info("logout 请求头 {}",token);
+        log.debug("logout 请求头 {}",token);
 
         String id = jwtUtils.getUserIdFromToken(token);
-        //删除登录的用户名
-        String userKey = String.format(jwtUsername,id);
-        redisTemplate.delete(userKey);
-
-        //删除id当前使用的token
-        redisTemplate.opsForHash().delete(jwtToken,id);
-        //token放入黑名单
-        String group = jwtUtils.getGroupFromToken(token);
-        long time= jwtUtils.getLoginDate(token);
+        //删除登录的用户名和id当前使用的token
+        //用户的token版本加一，该用户之前签发的token全部失效
+        long time= jwtUtils.generateLoginDate().getTime();
         long expired = time - new Date().getTime();
-        log.error("logout 原始数据: {} redis {} 截止时间: {}",time,userKey,
-                new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(time)));
-        String blackKey = String.format(jwtBlacklist,group);
-        if (expired>0) {
-            redisTemplate.opsForValue().set(blackKey, token, expired, TimeUnit.MILLISECONDS);
-        }
+        logoutRedis.record(() -> sessionStore.revoke(id,expired));
+        authEventLog.publish(AuthEventType.LOGOUT,0,id,null,null);
 
         return R.ok().message("注销成功");
     }
@@ -196,20 +190,14 @@ public class ClientController {
         refreshToken =  jwtUtils.refreshToken(oldToken);
 
         String id = jwtUtils.getUserIdFromToken(refreshToken);
-        //原token放入黑名单
+        //原token放入黑名单，只保存group，值为1
         String group = jwtUtils.getGroupFromToken(oldToken);
-        String key = String.format(jwtBlacklist,group);
-        if (expired>0) {
-            redisTemplate.opsForValue().set(key, oldToken, expired, TimeUnit.MILLISECONDS);
-        }
-        //当前使用的token进行修改
-        redisTemplate.opsForHash().put(jwtToken,id,refreshToken);
         //更新用户有效时间, 如果被注销，重新写入redis
-        String userkey = String.format(jwtUsername,id);
+        //当前使用的token进行修改
         String username = jwtUtils.getUserNameFromToken(refreshToken);
-        if (expired>0) {
-            redisTemplate.opsForValue().set(userkey,username, expired, TimeUnit.MILLISECONDS);
-        }
+        String newToken = refreshToken;
+        refreshRedis.record(() -> sessionStore.refresh(id,group,username,newToken,expired));
+        authEventLog.publish(AuthEventType.TOKEN_REFRESH,0,id,group,null);
 
         Date date = jwtUtils.getHoldTime(refreshToken);
 
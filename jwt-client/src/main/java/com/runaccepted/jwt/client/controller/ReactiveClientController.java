@@ -0,0 +1,202 @@
+package com.runaccepted.jwt.client.controller;
+
+import com.runaccepted.jwt.api.constant.JwtConstant;
+import com.runaccepted.jwt.api.entity.Admin;
+import com.runaccepted.jwt.api.event.AuthEventLog;
+import com.runaccepted.jwt.api.event.AuthEventType;
+import com.runaccepted.jwt.api.session.SessionStore;
+import com.runaccepted.jwt.api.to.R;
+import com.runaccepted.jwt.client.session.ReactiveSessionStore;
+import com.runaccepted.jwt.client.utils.JwtUtils;
+import com.runaccepted.jwt.client.utils.LoginAccounts;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 响应式模式（reactive profile）下的登录接口，路径和返回值与ClientController相同
+ * webflux运行在tomcat的非阻塞适配（TomcatHttpHandlerAdapter）上，不是netty；
+ * redis操作不阻塞tomcat的请求线程，签发和解析token在处理请求的线程或lettuce的回调线程中直接完成
+ */
+@RestController
+@RequestMapping("/jwt-client")
+@Profile("reactive")
+@Slf4j
+public class ReactiveClientController {
+
+    //签发期间token版本被加一时最多签发的次数
+    private static final int LOGIN_ATTEMPTS = 3;
+
+    @Autowired
+    JwtUtils jwtUtils;
+
+    @Autowired
+    LoginAccounts loginAccounts;
+
+    @Autowired
+    ReactiveSessionStore sessionStore;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    AuthEventLog authEventLog;
+
+    //各接口中每次redis操作的耗时，与ClientController使用相同的指标
+    private Timer loginRedis;
+    private Timer reloginRedis;
+    private Timer logoutRedis;
+    private Timer refreshRedis;
+
+    @PostConstruct
+    public void init(){
+        loginRedis = redisTimer("login");
+        reloginRedis = redisTimer("relogin");
+        logoutRedis = redisTimer("logout");
+        refreshRedis = redisTimer("refresh");
+    }
+
+    private Timer redisTimer(String endpoint){
+        return Timer.builder("jwt.client.redis")
+                .description("redis操作耗时")
+                .tag("endpoint",endpoint)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(50_000))
+                .maximumExpectedValue(Duration.ofSeconds(5))
+                .register(meterRegistry);
+    }
+
+    /**
+     * 从订阅到完成（或出错）的耗时
+     */
+    private static <T> Mono<T> timed(Timer timer, Mono<T> mono){
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return mono.doFinally(signal -> timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    @ApiOperation(value = "登录")
+    @PostMapping("/login")
+    public Mono<R> login(@RequestBody Admin admin){
+
+        String accountId = loginAccounts.authenticate(admin);
+        if (accountId == null) {
+            authEventLog.publish(AuthEventType.REJECT,20001,null,null,admin.getUsername());
+            return Mono.just(R.error().message("账号或密码错误"));
+        }
+
+        admin.setId(accountId);
+        //用户名有效时间 - 用户免登录时间
+        long expired = jwtUtils.generateLoginDate().getTime() - new Date().getTime();
+        return login(admin,expired,LOGIN_ATTEMPTS);
+    }
+
+    /**
+     * 按本节点记录的token版本预先签发token，由登录脚本一次完成版本校验、单端登录判断和写入
+     * 版本不同（其他节点登出/重新登录、签发期间被加一）时脚本返回当前版本，按它重新签发
+     */
+    private Mono<R> login(Admin admin, long expired, int attempts){
+        if (attempts == 0) {
+            return Mono.just(R.error().message("登录状态已变更，请重新登录"));
+        }
+        return sessionStore.version(admin.getId()).flatMap(version -> {
+            String token = jwtUtils.generateToken(admin,version);
+            return timed(loginRedis, sessionStore.login(admin.getId(),admin.getUsername(),token,version,expired,false))
+                    .flatMap(status -> {
+                        if (status==SessionStore.LOGGED_IN){
+                            authEventLog.publish(AuthEventType.REJECT,20001,admin.getId(),null,admin.getUsername());
+                            return Mono.just(R.error().message(admin.getUsername()+" 已经登录！"));
+                        }
+                        if (status==SessionStore.CREATED){
+                            authEventLog.publish(AuthEventType.LOGIN,0,admin.getId(),null,admin.getUsername());
+                            return Mono.just(R.ok().data("token",token));
+                        }
+                        return login(admin,expired,attempts - 1);
+                    });
+        });
+    }
+
+    @ApiOperation(value = "登录")
+    @PostMapping("/relogin")
+    public Mono<R> relogin(@RequestBody Admin admin){
+
+        String accountId = loginAccounts.authenticate(admin);
+        if (accountId == null) {
+            authEventLog.publish(AuthEventType.REJECT,20001,null,null,admin.getUsername());
+            return Mono.just(R.error().message("账号或密码错误"));
+        }
+
+        admin.setId(accountId);
+        long expired = jwtUtils.generateLoginDate().getTime() - new Date().getTime();
+        //删除用户名和用户token，用户的token版本加一，之前签发的token全部失效
+        return timed(reloginRedis, sessionStore.revoke(admin.getId(),expired)).flatMap(version -> {
+            String newToken = jwtUtils.generateToken(admin,version);
+            //写入用户名和活跃token，覆盖期间并发登录写入的值
+            return timed(reloginRedis, sessionStore.login(admin.getId(),admin.getUsername(),newToken,version,expired,true))
+                    .map(status -> {
+                        if (status!=SessionStore.CREATED){
+                            return R.error().message("登录状态已变更，请重新登录");
+                        }
+                        authEventLog.publish(AuthEventType.RELOGIN,0,admin.getId(),null,admin.getUsername());
+                        return R.ok().data("token",newToken);
+                    });
+        });
+    }
+
+    @ApiOperation(value = "根据jwt得到信息")
+    @GetMapping("/getInfo")
+    public Mono<R> getInfo(@RequestHeader(JwtConstant.tokenHeader) String token){
+
+        log.debug("请求头 {}",token);
+
+        return Mono.just(R.ok().data("username",jwtUtils.getUserNameFromToken(token)));
+    }
+
+    @ApiOperation(value = "清除token，登入")
+    @GetMapping("/logout")
+    public Mono<R> logout(@RequestHeader(JwtConstant.tokenHeader) String token){
+
+        log.debug("logout 请求头 {}",token);
+
+        String id = jwtUtils.getUserIdFromToken(token);
+        long expired = jwtUtils.generateLoginDate().getTime() - new Date().getTime();
+        //删除登录的用户名和id当前使用的token，用户的token版本加一
+        return timed(logoutRedis, sessionStore.revoke(id,expired)).map(version -> {
+            authEventLog.publish(AuthEventType.LOGOUT,0,id,null,null);
+            return R.ok().message("注销成功");
+        });
+    }
+
+    @ApiOperation(value = "刷新token")
+    @GetMapping(value = "/token/refresh")
+    public Mono<R> refreshToken(@RequestHeader(JwtConstant.tokenHeader) String oldToken) {
+
+        //再次获得免登录机会
+        long expired = jwtUtils.generateLoginDate().getTime() - new Date().getTime();
+
+        String refreshToken = jwtUtils.refreshToken(oldToken);
+        String id = jwtUtils.getUserIdFromToken(refreshToken);
+        //原token放入黑名单
+        String group = jwtUtils.getGroupFromToken(oldToken);
+        String username = jwtUtils.getUserNameFromToken(refreshToken);
+
+        return timed(refreshRedis, sessionStore.refresh(id,group,username,refreshToken,expired))
+                .then(Mono.fromSupplier(() -> {
+                    authEventLog.publish(AuthEventType.TOKEN_REFRESH,0,id,group,null);
+                    Date date = jwtUtils.getHoldTime(refreshToken);
+                    //将新的token交给前端
+                    return R.ok().data("token",refreshToken).data("date",date);
+                }));
+    }
+}
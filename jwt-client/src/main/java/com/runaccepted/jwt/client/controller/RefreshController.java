@@ -0,0 +1,51 @@
+package com.runaccepted.jwt.client.controller;
+
+import com.runaccepted.jwt.client.utils.AdminKey;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.context.refresh.ContextRefresher;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Set;
+
+/**
+ * 重新读取配置（spring.config.additional-location等外部配置文件），不需要重启
+ *
+ * 变化的配置以EnvironmentChangeEvent通知，JwtUtils据此重新加载密钥环；
+ * 与AdminController相同需要请求头X-Admin-Key，servlet和reactive模式下都可用
+ */
+@RestController
+@Slf4j
+public class RefreshController {
+
+    @Autowired
+    ContextRefresher contextRefresher;
+
+    @Autowired
+    AdminKey adminKey;
+
+    /**
+     * 返回变化的配置项
+     */
+    @ApiOperation(value = "刷新配置")
+    @PostMapping("/jwt-client/admin/refresh")
+    public Mono<ResponseEntity<Set<String>>> refresh(@RequestHeader(value = AdminKey.HEADER, required = false) String key){
+        if (!adminKey.matches(key)){
+            return Mono.just(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
+        }
+        //重新读取配置时会创建临时的上下文，不在请求线程中执行
+        return Mono.fromCallable(() -> contextRefresher.refresh())
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(keys -> {
+                    log.warn("配置已刷新 变化的配置项:{}", keys);
+                    return ResponseEntity.ok(keys);
+                });
+    }
+}
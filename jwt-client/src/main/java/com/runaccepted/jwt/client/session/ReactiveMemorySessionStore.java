@@ -0,0 +1,41 @@
+package com.runaccepted.jwt.client.session;
+
+import com.runaccepted.jwt.api.session.SessionStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * 响应式模式使用进程内存储（jwt.session.store=memory）
+ * 进程内的读写不会阻塞，直接在请求线程中执行
+ */
+@Component
+@Profile("reactive")
+@ConditionalOnProperty(name = "jwt.session.store", havingValue = "memory")
+public class ReactiveMemorySessionStore implements ReactiveSessionStore {
+
+    @Autowired
+    SessionStore sessionStore;
+
+    @Override
+    public Mono<Long> version(String id) {
+        return Mono.fromCallable(() -> sessionStore.version(id));
+    }
+
+    @Override
+    public Mono<Long> login(String id, String username, String token, long version, long ttl, boolean force) {
+        return Mono.fromCallable(() -> sessionStore.login(id, username, token, version, ttl, force));
+    }
+
+    @Override
+    public Mono<Long> revoke(String id, long ttl) {
+        return Mono.fromCallable(() -> sessionStore.revoke(id, ttl));
+    }
+
+    @Override
+    public Mono<Void> refresh(String id, String group, String username, String token, long ttl) {
+        return Mono.fromRunnable(() -> sessionStore.refresh(id, group, username, token, ttl));
+    }
+}
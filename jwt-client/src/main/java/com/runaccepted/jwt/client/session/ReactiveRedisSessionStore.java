@@ -0,0 +1,82 @@
+package com.runaccepted.jwt.client.session;
+
+import com.runaccepted.jwt.api.session.SessionStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+
+/**
+ * 响应式的登录会话读写（reactive profile），与RedisSessionStore使用相同的key和lua脚本
+ */
+@Component
+@Profile("reactive")
+@ConditionalOnProperty(name = "jwt.session.store", havingValue = "redis", matchIfMissing = true)
+public class ReactiveRedisSessionStore implements ReactiveSessionStore {
+
+    @Autowired
+    SessionKeys keys;
+
+    @Autowired
+    ReactiveStringRedisTemplate redisTemplate;
+
+    @Autowired
+    VersionHints hints;
+
+    /**
+     * 本节点最近一次看到的token版本，不访问redis；可能已过时，由登录脚本校验
+     */
+    @Override
+    public Mono<Long> version(String id) {
+        return Mono.just(hints.get(id));
+    }
+
+    /**
+     * 脚本返回的当前版本记录下来，STALE时按它重新签发
+     */
+    @Override
+    public Mono<Long> login(String id, String username, String token, long version, long ttl, boolean force) {
+        return redisTemplate.execute(SessionScripts.LOGIN, keys.userKeys(id),
+                Arrays.asList(username, token, String.valueOf(version), String.valueOf(Math.max(ttl, 1)),
+                        keys.getJwtSessionChannel(), id, SessionScripts.flag(force)))
+                .next()
+                .map(result -> SessionScripts.loginStatus(result, id, hints))
+                .defaultIfEmpty(SessionStore.STALE);
+    }
+
+    /**
+     * 迁移期间旧的JWT_TOKEN hash与脚本同时删除
+     *
+     * @return 新的token版本
+     */
+    @Override
+    public Mono<Long> revoke(String id, long ttl) {
+        Mono<Long> version = redisTemplate.execute(SessionScripts.REVOKE, keys.userKeys(id),
+                Arrays.asList(String.valueOf(ttl), keys.getJwtSessionChannel(), id))
+                .next()
+                .doOnNext(v -> hints.set(id, v))
+                .defaultIfEmpty(0L);
+        if (!keys.isJwtTokenLegacy()) {
+            return version;
+        }
+        Mono<Long> legacy = redisTemplate.opsForHash().remove(keys.getJwtToken(), id);
+        return Mono.zip(version, legacy, (v, removed) -> v);
+    }
+
+    /**
+     * @param ttl 有效时间（毫秒），不大于0时只通知网关
+     */
+    @Override
+    public Mono<Void> refresh(String id, String group, String username, String token, long ttl) {
+        if (ttl <= 0) {
+            return redisTemplate.convertAndSend(keys.getJwtSessionChannel(), id).then();
+        }
+        return redisTemplate.execute(SessionScripts.REFRESH, keys.refreshKeys(id, group),
+                Arrays.asList(token, username, String.valueOf(ttl), keys.getJwtSessionChannel(), id))
+                .then();
+    }
+}
@@ -0,0 +1,26 @@
+package com.runaccepted.jwt.client.session;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * 响应式模式（reactive profile）下的会话读写，返回值与SessionStore相同
+ */
+public interface ReactiveSessionStore {
+
+    /**
+     * 签发新token时写入的版本，可能已过时，由login校验
+     */
+    Mono<Long> version(String id);
+
+    /**
+     * @return SessionStore.CREATED / LOGGED_IN / STALE
+     */
+    Mono<Long> login(String id, String username, String token, long version, long ttl, boolean force);
+
+    /**
+     * @return 新的token版本
+     */
+    Mono<Long> revoke(String id, long ttl);
+
+    Mono<Void> refresh(String id, String group, String username, String token, long ttl);
+}
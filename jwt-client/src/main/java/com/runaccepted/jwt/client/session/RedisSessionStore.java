@@ -0,0 +1,175 @@
+package com.runaccepted.jwt.client.session;
+
+import com.runaccepted.jwt.api.session.SessionStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 登录会话在redis中的读写（jwt.session.store=redis，默认）
+ *
+ * 登录、登出/重新登录、刷新各由一个lua脚本一次往返原子完成，
+ * 会话失效通知也在脚本中发布；脚本使用EVALSHA，redis中没有时自动回退到EVAL
+ */
+@Component
+@ConditionalOnProperty(name = "jwt.session.store", havingValue = "redis", matchIfMissing = true)
+public class RedisSessionStore implements SessionStore {
+
+    @Autowired
+    SessionKeys keys;
+
+    @Autowired
+    StringRedisTemplate redisTemplate;
+
+    @Autowired
+    VersionHints hints;
+
+    /**
+     * 本节点最近一次看到的token版本，不访问redis；可能已过时，由登录脚本校验
+     */
+    @Override
+    public long version(String id) {
+        return hints.get(id);
+    }
+
+    /**
+     * 校验版本，写入登录用户名和活跃token，并通知网关
+     * 脚本返回的当前版本记录下来，STALE时按它重新签发
+     *
+     * @param version 新token中的版本
+     * @param ttl     有效时间（毫秒）
+     * @param force   已登录时是否覆盖
+     * @return CREATED / LOGGED_IN / STALE
+     */
+    @Override
+    public long login(String id, String username, String token, long version, long ttl, boolean force) {
+        List<?> result = redisTemplate.execute(SessionScripts.LOGIN, keys.userKeys(id),
+                username, token, String.valueOf(version), String.valueOf(Math.max(ttl, 1)),
+                keys.getJwtSessionChannel(), id, SessionScripts.flag(force));
+        return SessionScripts.loginStatus(result, id, hints);
+    }
+
+    /**
+     * 删除登录用户名和活跃token，token版本加一，并通知网关
+     * 迁移期间同时删除旧的JWT_TOKEN hash中的记录，该key不在用户的slot中，单独删除
+     *
+     * @param ttl 版本号的有效时间（毫秒）
+     * @return 新的token版本
+     */
+    @Override
+    public long revoke(String id, long ttl) {
+        Long version = redisTemplate.execute(SessionScripts.REVOKE, keys.userKeys(id),
+                String.valueOf(ttl), keys.getJwtSessionChannel(), id);
+        if (keys.isJwtTokenLegacy()) {
+            redisTemplate.opsForHash().delete(keys.getJwtToken(), id);
+        }
+        if (version == null) {
+            return 0;
+        }
+        hints.set(id, version);
+        return version;
+    }
+
+    /**
+     * 原token加入黑名单，写入新的活跃token并延长登录用户名，并通知网关
+     *
+     * @param group 原token的group
+     * @param ttl   有效时间（毫秒），不大于0时只通知网关
+     */
+    @Override
+    public void refresh(String id, String group, String username, String token, long ttl) {
+        if (ttl <= 0) {
+            redisTemplate.convertAndSend(keys.getJwtSessionChannel(), id);
+            return;
+        }
+        redisTemplate.execute(SessionScripts.REFRESH, keys.refreshKeys(id, group),
+                token, username, String.valueOf(ttl), keys.getJwtSessionChannel(), id);
+    }
+
+    /**
+     * 批量注销，一批用户的命令通过pipeline一次发送
+     * 与revoke相同：删除登录用户名和活跃token，token版本加一，并通知网关
+     *
+     * @param ttl 版本号的有效时间（毫秒）
+     */
+    @Override
+    public void revokeAll(List<String> ids, long ttl) {
+        RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+        byte[] channel = serializer.serialize(keys.getJwtSessionChannel());
+        byte[] hash = serializer.serialize(keys.getJwtToken());
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String id : ids) {
+                revoke(connection, serializer, id, ttl, channel, hash);
+            }
+            return null;
+        });
+    }
+
+    private void revoke(RedisConnection connection, RedisSerializer<String> serializer,
+                        String id, long ttl, byte[] channel, byte[] hash) {
+        byte[] version = serializer.serialize(keys.version(id));
+        byte[] field = serializer.serialize(id);
+        connection.del(serializer.serialize(keys.username(id)), serializer.serialize(keys.session(id)));
+        connection.incr(version);
+        if (ttl > 0) {
+            connection.pExpire(version, ttl);
+        }
+        if (keys.isJwtTokenLegacy()) {
+            connection.hDel(hash, field);
+        }
+        connection.publish(channel, field);
+    }
+
+    /**
+     * 注销在cutoff之前签发的全部token
+     * 写入截止时间并通知网关，网关启动和重新订阅时也会读取该值
+     *
+     * @param ttl 截止时间的保留时间（毫秒），之后之前签发的token都已过免登录时间
+     */
+    @Override
+    public void revokeIssuedBefore(long cutoff, long ttl) {
+        String value = String.valueOf(cutoff);
+        redisTemplate.opsForValue().set(keys.getJwtRevokeBefore(), value, Math.max(ttl, 1), TimeUnit.MILLISECONDS);
+        redisTemplate.convertAndSend(keys.getJwtRevokeChannel(), value);
+    }
+
+    @Override
+    public long revokedBefore() {
+        String cutoff = redisTemplate.opsForValue().get(keys.getJwtRevokeBefore());
+        return StringUtils.isEmpty(cutoff) ? 0 : Long.parseLong(cutoff);
+    }
+
+    /**
+     * 与网关的auth_check.lua相同的判断，三次读取通过pipeline一次发送
+     */
+    @Override
+    public long check(String id, String group, String token, long version) {
+        List<Object> values = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+            connection.get(serializer.serialize(keys.version(id)));
+            connection.exists(serializer.serialize(keys.blacklist(id, group)));
+            connection.get(serializer.serialize(keys.session(id)));
+            return null;
+        });
+        String current = (String) values.get(0);
+        if (!StringUtils.isEmpty(current) && version < Long.parseLong(current)) {
+            return LOGGED_OUT;
+        }
+        if (Boolean.TRUE.equals(values.get(1))) {
+            return LOGGED_OUT;
+        }
+        Object active = values.get(2);
+        if (active == null && keys.isJwtTokenLegacy()) {
+            active = redisTemplate.opsForHash().get(keys.getJwtToken(), id);
+        }
+        return token.equals(active) ? ALLOW : MISMATCH;
+    }
+}
@@ -0,0 +1,73 @@
+package com.runaccepted.jwt.client.session;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 会话相关的redis key和频道，阻塞和响应式两种实现共用
+ */
+@Component
+@Getter
+public class SessionKeys {
+
+    @Value("${jwt.username.format}")
+    private String jwtUsername;
+
+    @Value("${jwt.blacklist.format}")
+    private String jwtBlacklist;
+
+    @Value("${jwt.session.format}")
+    private String jwtSession;
+
+    @Value("${jwt.version.format}")
+    private String jwtVersion;
+
+    @Value("${jwt.token.format}")
+    private String jwtToken;
+
+    @Value("${jwt.token.legacy}")
+    private boolean jwtTokenLegacy;
+
+    @Value("${jwt.session.channel}")
+    private String jwtSessionChannel;
+
+    @Value("${jwt.revoke.before.key}")
+    private String jwtRevokeBefore;
+
+    @Value("${jwt.revoke.channel}")
+    private String jwtRevokeChannel;
+
+    public String username(String id) {
+        return String.format(jwtUsername, id);
+    }
+
+    public String session(String id) {
+        return String.format(jwtSession, id);
+    }
+
+    public String version(String id) {
+        return String.format(jwtVersion, id);
+    }
+
+    public String blacklist(String id, String group) {
+        return String.format(jwtBlacklist, id, group);
+    }
+
+    /**
+     * login.lua、revoke.lua的KEYS
+     */
+    List<String> userKeys(String id) {
+        return Arrays.asList(username(id), session(id), version(id));
+    }
+
+    /**
+     * refresh.lua的KEYS
+     */
+    List<String> refreshKeys(String id, String group) {
+        return Arrays.asList(blacklist(id, group), session(id), username(id));
+    }
+}
@@ -0,0 +1,67 @@
+package com.runaccepted.jwt.client.session;
+
+import com.runaccepted.jwt.api.session.SessionStore;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 会话的lua脚本，参数顺序见脚本中的注释
+ */
+final class SessionScripts {
+
+    //返回 {状态, 当前版本}
+    @SuppressWarnings("rawtypes")
+    static final DefaultRedisScript<List> LOGIN = script("scripts/login.lua", List.class);
+
+    static final DefaultRedisScript<Long> REVOKE = script("scripts/revoke.lua", Long.class);
+
+    static final DefaultRedisScript<Long> REFRESH = script("scripts/refresh.lua", Long.class);
+
+    private SessionScripts() {
+    }
+
+    private static <T> DefaultRedisScript<T> script(String path, Class<T> resultType) {
+        DefaultRedisScript<T> script = new DefaultRedisScript<>();
+        script.setScriptText(withoutComments(path));
+        script.setResultType(resultType);
+        return script;
+    }
+
+    /**
+     * 去掉注释行后的脚本
+     * EVAL按平台默认编码发送脚本，sha1按UTF-8计算，中文注释在非UTF-8的平台上使两者不一致，EVALSHA总是回退到EVAL
+     */
+    private static String withoutComments(String path) {
+        try (InputStream in = new ClassPathResource(path).getInputStream()) {
+            return Arrays.stream(StreamUtils.copyToString(in, StandardCharsets.UTF_8).split("\n"))
+                    .filter(line -> !line.trim().startsWith("--"))
+                    .collect(Collectors.joining("\n"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(path, e);
+        }
+    }
+
+    /**
+     * 登录脚本的结果，记录当前版本供下次签发使用，返回状态
+     */
+    static long loginStatus(List<?> result, String id, VersionHints hints) {
+        if (result == null || result.size() < 2) {
+            return SessionStore.STALE;
+        }
+        hints.set(id, ((Number) result.get(1)).longValue());
+        return ((Number) result.get(0)).longValue();
+    }
+
+    static String flag(boolean value) {
+        return value ? "1" : "0";
+    }
+}
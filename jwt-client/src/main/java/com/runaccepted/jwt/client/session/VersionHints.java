@@ -0,0 +1,44 @@
+package com.runaccepted.jwt.client.session;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 本节点最近一次看到的用户token版本，登录时按它预先签发token，省去读取版本的往返
+ *
+ * 固定大小的数组，按用户id的hash取槽位，不同用户可能共用一个槽位；
+ * 值只是猜测，登录脚本与redis中的版本比较，不一致时返回STALE和当前版本，按当前版本重新签发一次
+ */
+@Component
+public class VersionHints {
+
+    //槽位数，2的幂
+    @Value("${jwt.version.hints}")
+    private int size;
+
+    private AtomicLongArray versions;
+
+    @PostConstruct
+    public void init() {
+        if (size <= 0 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("jwt.version.hints应为2的幂: " + size);
+        }
+        versions = new AtomicLongArray(size);
+    }
+
+    public long get(String id) {
+        return versions.get(slot(id));
+    }
+
+    public void set(String id, long version) {
+        versions.set(slot(id), version);
+    }
+
+    private int slot(String id) {
+        int h = id.hashCode();
+        return (h ^ (h >>> 16)) & (size - 1);
+    }
+}
@@ -0,0 +1,26 @@
+package com.runaccepted.jwt.client.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * 运维接口的密钥 jwt.admin.key，请求头X-Admin-Key与之一致才可调用，为空时运维接口关闭
+ */
+@Component
+public class AdminKey {
+
+    public static final String HEADER = "X-Admin-Key";
+
+    @Value("${jwt.admin.key}")
+    private String adminKey;
+
+    public boolean matches(String key){
+        if (adminKey==null||adminKey.isEmpty()||key==null){
+            return false;
+        }
+        return MessageDigest.isEqual(adminKey.getBytes(StandardCharsets.UTF_8),key.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,13 +1,23 @@
 package com.runaccepted.jwt.client.utils;
 
-import com.runaccepted.jwt.api.constant.JwtConstant;
+import com.runaccepted.jwt.api.codec.GroupIds;
+import com.runaccepted.jwt.api.codec.JwtCodec;
+import com.runaccepted.jwt.api.codec.JwtCodecException;
+import com.runaccepted.jwt.api.codec.JwtPayload;
+import com.runaccepted.jwt.api.codec.KeyRing;
+import com.runaccepted.jwt.api.codec.KeyRingProperties;
 import com.runaccepted.jwt.api.entity.Admin;
-import io.jsonwebtoken.*;
+import io.jsonwebtoken.impl.TextCodec;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 
-import java.text.SimpleDateFormat;
+import javax.annotation.PostConstruct;
 import java.util.*;
 
 /**
@@ -41,56 +51,86 @@ public class JwtUtils {
 	@Value("${jwt.hold.type}")
 	private int holdType;
 
+	//签发紧凑格式的token（短载荷名、秒、16字节group），两种格式都可以解析
+	@Value("${jwt.token.compact}")
+	private boolean compact;
+
+	@Autowired
+	Environment environment;
+
+	private JwtCodec codec;
+
+	@PostConstruct
+	public void init() {
+		codec = new JwtCodec(loadKeyRing());
+		codec.setCompact(compact);
+	}
+
+	/**
+	 * 配置刷新后重新加载密钥环、切换token格式，不需要重启
+	 * 新配置有误时保留原密钥环
+	 */
+	@EventListener
+	public void onEnvironmentChange(EnvironmentChangeEvent event) {
+		if (event.getKeys().contains("jwt.token.compact")) {
+			codec.setCompact(environment.getProperty("jwt.token.compact", Boolean.class, false));
+			log.info("签发紧凑格式token:{}", codec.isCompact());
+		}
+		boolean changed = event.getKeys().stream()
+				.anyMatch(key -> key.startsWith("jwt.keyring") || key.equals("jwt.secret.key"));
+		if (!changed) {
+			return;
+		}
+		try {
+			codec.setKeyRing(loadKeyRing());
+			log.info("密钥环已更新 签发使用kid:{}", codec.getKeyRing().active().getKid());
+		} catch (IllegalArgumentException e) {
+			log.error("密钥环配置错误，继续使用原密钥环 {}", e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * jwt.keyring.* 配置的密钥，以及jwt.secret.key对应的没有kid的HS512/HS256密钥
+	 */
+	private KeyRing loadKeyRing() {
+		KeyRingProperties properties = Binder.get(environment)
+				.bind("jwt.keyring", KeyRingProperties.class)
+				.orElseGet(KeyRingProperties::new);
+		//与jjwt的signWith(SignatureAlgorithm, String)相同，密钥按base64解码，只解码一次
+		byte[] secret = TextCodec.BASE64.decode(environment.getProperty("jwt.secret.key", APPSECRET));
+		return KeyRing.load(properties, secret);
+	}
+
 	/**
 	 * 根据用户信息生成token
 	 */
 	public String generateToken(Admin admin) {
-		Map<String, Object> claims = new HashMap<String, Object>();
-		claims.put(JwtConstant.CLAIM_KEY_USERID, admin.getId());
-		claims.put(JwtConstant.CLAIM_KEY_USERNAME, admin.getUsername());
-		claims.put(JwtConstant.CLAIM_KEY_CREATED, new Date());
-		claims.put(JwtConstant.CLAIM_KEY_HOLDTIME,generateLoginDate());
-		claims.put(JwtConstant.CLAIM_KEY_GROUP,generateGroup());
-		return generateToken(claims);
+		return generateToken(admin, 0);
 	}
 
 	/**
-	 * 根据负责生成JWT的token
+	 * 根据用户信息生成token
+	 *
+	 * @param version 用户当前的token版本，redis中的版本增加后该token失效
 	 */
-	private String generateToken(Map<String, Object> claims) {
-		return Jwts.builder()
-				.setSubject(SUBJECT)
-				.setClaims(claims)
-				.setExpiration(generateExpirationDate())
-				.signWith(SignatureAlgorithm.HS512, APPSECRET)
-				.compact();
+	public String generateToken(Admin admin, long version) {
+		return codec.encode(new JwtPayload(admin.getId(), admin.getUsername(), generateGroup(),
+				System.currentTimeMillis(), generateLoginDate().getTime(), generateExpirationDate().getTime(), version));
 	}
 
 	/**
 	 * 从token中获取JWT中的负载
+	 * 已过期的token同样返回负载，由调用方判断有效期
 	 */
-	public Claims getClaimsFromToken(String token) {
-		Claims claims = null;
+	public JwtPayload getPayloadFromToken(String token) {
+		JwtPayload payload = null;
 		try {
-			claims = Jwts.parser()
-					.setSigningKey(APPSECRET)
-					.parseClaimsJws(token)
-					.getBody();
-		}catch (ExpiredJwtException e) {
-			String id = (String) e.getClaims().get(JwtConstant.CLAIM_KEY_USERID);
-			String username = (String) e.getClaims().get(JwtConstant.CLAIM_KEY_USERNAME);
-			String group = (String)e.getClaims().get(JwtConstant.CLAIM_KEY_GROUP);
-			log.error("JWT载荷中 用户ID:{} 用户名:{} 所处组:{}", id, username,group);
-
-			claims=e.getClaims();
-		} catch (MalformedJwtException e){
-			log.error("Json格式错误 {}",e.getLocalizedMessage());
-		} catch (SignatureException e){
-			log.error("Json格式错误 {}",e.getLocalizedMessage());
-		} catch(IllegalArgumentException e){
-			log.error("错误 {}",e.getLocalizedMessage());
+			payload = codec.decode(token);
+		} catch (JwtCodecException e){
+			//不合法的token由调用方记录，这里只在调试时输出
+			log.debug("Json格式错误 {}",e.getLocalizedMessage());
 		}
-		return claims;
+		return payload;
 	}
 
 	/**
@@ -118,10 +158,8 @@ public class JwtUtils {
 	 */
 	public String generateGroup() {
 
-		String group = UUID.randomUUID().toString();
-		group = group.replace("-","");
-
-		return group;
+		//按签发时间排序，高48位为毫秒时间戳
+		return GroupIds.next();
 	}
 
 	/**
@@ -129,8 +167,7 @@ public class JwtUtils {
 	 */
 	public String getUserNameFromToken(String token) {
 
-		Claims claims = getClaimsFromToken(token);
-		String username = (String) claims.get(JwtConstant.CLAIM_KEY_USERNAME);
+		String username = getPayloadFromToken(token).getUsername();
 
 		return username;
 	}
@@ -139,9 +176,8 @@ public class JwtUtils {
 	 * 从token中获取过期时间
 	 */
 	public Date getExpiredDateFromToken(String token) {
-		Claims claims = getClaimsFromToken(token);
-		Date expiredDate = claims.getExpiration();
-		log.error("token中过期时间 {}", new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(expiredDate));
+		Date expiredDate = new Date(getPayloadFromToken(token).getExpiration());
+		log.debug("token中过期时间 {}", expiredDate);
 		return expiredDate;
 	}
 
@@ -149,9 +185,8 @@ public class JwtUtils {
 	 * 从token中获取group
 	 */
 	public String getGroupFromToken(String token) {
-		Claims claims = getClaimsFromToken(token);
-		String group = (String)claims.get(JwtConstant.CLAIM_KEY_GROUP);
-		log.error("token中的用户组 {}", group);
+		String group = getPayloadFromToken(token).getGroup();
+		log.debug("token中的用户组 {}", group);
 		return group;
 	}
 
@@ -159,8 +194,7 @@ public class JwtUtils {
 	 * 从token中获取登录用户名id
 	 */
 	public String getUserIdFromToken(String token) {
-		Claims claims = getClaimsFromToken(token);
-		String id = (String) claims.get(JwtConstant.CLAIM_KEY_USERID);
+		String id = getPayloadFromToken(token).getId();
 		return id;
 	}
 
@@ -168,11 +202,9 @@ public class JwtUtils {
 	 * 从token中获取登录截止时间
 	 */
 	public Date getHoldTime(String token){
-		Claims claims = getClaimsFromToken(token);
-		long dateTime = (long)claims.get(JwtConstant.CLAIM_KEY_HOLDTIME);
+		long dateTime = getPayloadFromToken(token).getHoldTime();
 		Date date = new Date(dateTime);
-		log.info("原数据值：{} 该token免登录时间截止至 {}",dateTime,
-				new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(date));
+		log.debug("原数据值：{} 该token免登录时间截止至 {}",dateTime,date);
 		return date;
 	}
 
@@ -230,11 +262,10 @@ public class JwtUtils {
 	 * 刷新token
 	 */
 	public String refreshToken(String token) {
-		Claims claims = getClaimsFromToken(token);
-		claims.put(JwtConstant.CLAIM_KEY_CREATED, new Date());
-		claims.put(JwtConstant.CLAIM_KEY_HOLDTIME,generateLoginDate());
+		JwtPayload payload = getPayloadFromToken(token);
 		//新的group key 区分黑名单中的key
-		claims.put(JwtConstant.CLAIM_KEY_GROUP,generateGroup());
-		return generateToken(claims);
+		return codec.encode(new JwtPayload(payload.getId(), payload.getUsername(), generateGroup(),
+				System.currentTimeMillis(), generateLoginDate().getTime(), generateExpirationDate().getTime(),
+				payload.getVersion()));
 	}
 }
@@ -0,0 +1,53 @@
+package com.runaccepted.jwt.client.utils;
+
+import com.runaccepted.jwt.api.entity.Admin;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 可登录的账号，应用只有配置中的 login.id/username/password 一个账号
+ *
+ * 压测时jwt-load通过 spring.main.sources 注册同名的bean（xml定义）设置accounts，应用本身不提供其他账号
+ */
+@Component
+public class LoginAccounts {
+
+    @Value("${login.id}")
+    private String id;
+
+    @Value("${login.username}")
+    private String username;
+
+    @Value("${login.password}")
+    private String password;
+
+    //用户名 -> 账号
+    private Map<String, Admin> accounts = Collections.emptyMap();
+
+    public void setAccounts(List<Admin> accounts) {
+        Map<String, Admin> map = new HashMap<>();
+        for (Admin account : accounts) {
+            map.put(account.getUsername(), account);
+        }
+        this.accounts = map;
+    }
+
+    /**
+     * 账号密码正确时返回账号的id，否则返回null
+     */
+    public String authenticate(Admin admin) {
+        if (admin.getUsername() == null || admin.getPassword() == null) {
+            return null;
+        }
+        if (admin.equal(username, password)) {
+            return id;
+        }
+        Admin account = accounts.get(admin.getUsername());
+        return account != null && admin.equal(account.getUsername(), account.getPassword()) ? account.getId() : null;
+    }
+}
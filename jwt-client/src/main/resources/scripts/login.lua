@@ -0,0 +1,26 @@
+-- 登录，一次往返原子完成版本校验、单端登录判断、活跃token写入和会话失效通知
+-- 所有key使用相同的hash tag {用户id}，在redis cluster中位于同一个slot
+-- KEYS[1] 登录用户名 JWT_USERNAME::{id}
+-- KEYS[2] 活跃token JWT_SESSION::{id}
+-- KEYS[3] token版本 JWT_VERSION::{id}
+-- ARGV[1] 用户名
+-- ARGV[2] 新token
+-- ARGV[3] 新token中的版本，调用方预先签发时猜测的版本
+-- ARGV[4] 有效时间（毫秒），即免登录时长
+-- ARGV[5] 会话失效通知的频道
+-- ARGV[6] 用户id
+-- ARGV[7] 1:已登录时覆盖（重新登录） 0:已登录时不写入
+-- 返回 {状态, 当前版本}
+-- 状态 0:已创建 1:已经登录 2:token版本与当前版本不同，需按当前版本重新签发
+local version = tonumber(redis.call('GET', KEYS[3]) or '0')
+if tonumber(ARGV[3]) ~= version then
+    return {2, version}
+end
+if ARGV[7] == '1' then
+    redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[4])
+elseif not redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[4], 'NX') then
+    return {1, version}
+end
+redis.call('SET', KEYS[2], ARGV[2], 'PX', ARGV[4])
+redis.call('PUBLISH', ARGV[5], ARGV[6])
+return {0, version}
@@ -0,0 +1,14 @@
+-- 刷新token，原token加入黑名单，写入新的活跃token，延长登录用户名
+-- KEYS[1] 原token的黑名单 JWT_BLACKLIST::{id}:<group>
+-- KEYS[2] 活跃token JWT_SESSION::{id}
+-- KEYS[3] 登录用户名 JWT_USERNAME::{id}
+-- ARGV[1] 新token
+-- ARGV[2] 用户名
+-- ARGV[3] 有效时间（毫秒），即免登录时长
+-- ARGV[4] 会话失效通知的频道
+-- ARGV[5] 用户id
+redis.call('SET', KEYS[1], '1', 'PX', ARGV[3])
+redis.call('SET', KEYS[2], ARGV[1], 'PX', ARGV[3])
+redis.call('SET', KEYS[3], ARGV[2], 'PX', ARGV[3])
+redis.call('PUBLISH', ARGV[4], ARGV[5])
+return 0
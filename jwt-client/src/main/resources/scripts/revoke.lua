@@ -0,0 +1,15 @@
+-- 登出/重新登录，删除登录用户名和活跃token，token版本加一，之前签发的token全部失效
+-- KEYS[1] 登录用户名 JWT_USERNAME::{id}
+-- KEYS[2] 活跃token JWT_SESSION::{id}
+-- KEYS[3] token版本 JWT_VERSION::{id}
+-- ARGV[1] 版本号的有效时间（毫秒），之后之前签发的token都已过免登录时间
+-- ARGV[2] 会话失效通知的频道
+-- ARGV[3] 用户id
+-- 返回 新的token版本
+redis.call('DEL', KEYS[1], KEYS[2])
+local version = redis.call('INCR', KEYS[3])
+if tonumber(ARGV[1]) > 0 then
+    redis.call('PEXPIRE', KEYS[3], ARGV[1])
+end
+redis.call('PUBLISH', ARGV[2], ARGV[3])
+return version
@@ -0,0 +1,55 @@
+package com.runaccepted.jwt.client;
+
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+
+/**
+ * 测试用的本地redis，端口随机，每个测试类启动一个
+ */
+public final class EmbeddedRedis {
+
+    private final RedisServer server;
+
+    private final int port;
+
+    private EmbeddedRedis(int port) {
+        this.port = port;
+        this.server = RedisServer.builder().port(port).setting("save \"\"").setting("appendonly no").build();
+    }
+
+    public static EmbeddedRedis start() {
+        EmbeddedRedis redis = new EmbeddedRedis(freePort());
+        redis.server.start();
+        return redis;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * 连接该redis的LettuceConnectionFactory，同时用于同步和响应式的template
+     */
+    public LettuceConnectionFactory connectionFactory() {
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("127.0.0.1", port));
+        factory.afterPropertiesSet();
+        return factory;
+    }
+
+    public void stop() {
+        server.stop();
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.runaccepted.jwt.client.controller;
+
+import com.runaccepted.jwt.api.session.SessionStore;
+import com.runaccepted.jwt.client.EmbeddedRedis;
+import com.runaccepted.jwt.client.session.SessionKeys;
+import com.runaccepted.jwt.client.utils.AdminKey;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 批量注销接口：密钥校验、按批返回进度、截止时间
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "spring.cloud.nacos.discovery.enabled=false",
+                "jwt.admin.key=" + AdminControllerTest.ADMIN_KEY,
+                "jwt.revoke.chunk=2",
+                "jwt.event.file=target/admin-test/events.log"})
+class AdminControllerTest {
+
+    static final String ADMIN_KEY = "test-admin-key";
+
+    private static EmbeddedRedis redis;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    SessionStore sessionStore;
+
+    @Autowired
+    SessionKeys keys;
+
+    @Autowired
+    StringRedisTemplate redisTemplate;
+
+    @DynamicPropertySource
+    static void redisProperties(DynamicPropertyRegistry registry) {
+        redis = EmbeddedRedis.start();
+        registry.add("spring.redis.host", () -> "127.0.0.1");
+        registry.add("spring.redis.port", redis::getPort);
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        redis.stop();
+    }
+
+    @BeforeEach
+    void flush() {
+        redisTemplate.getConnectionFactory().getConnection().flushAll();
+    }
+
+    private ResponseEntity<String> revoke(String key, String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        if (key != null) {
+            headers.set(AdminKey.HEADER, key);
+        }
+        return restTemplate.postForEntity("/jwt-client/admin/revoke", new HttpEntity<>(body, headers), String.class);
+    }
+
+    @Test
+    void requiresAdminKey() {
+        assertEquals(HttpStatus.FORBIDDEN, revoke(null, "{\"ids\":[\"1\"]}").getStatusCode());
+        assertEquals(HttpStatus.FORBIDDEN, revoke("wrong-key", "{\"ids\":[\"1\"]}").getStatusCode());
+    }
+
+    @Test
+    void revokesInChunksAndStreamsProgress() {
+        for (String id : Arrays.asList("1", "2", "3")) {
+            assertEquals(SessionStore.CREATED, sessionStore.login(id, "admin" + id, "t" + id, 0, 60_000, false));
+        }
+
+        //重复的id只注销一次
+        ResponseEntity<String> response = revoke(ADMIN_KEY, "{\"ids\":[\"1\",\"2\",\"3\",\"2\"]}");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        String[] lines = response.getBody().split("\n");
+        assertEquals(3, lines.length, response.getBody());
+        assertEquals("{\"revoked\":2,\"total\":3}", lines[0]);
+        assertEquals("{\"revoked\":3,\"total\":3}", lines[1]);
+        assertTrue(lines[2].startsWith("{\"revoked\":3,\"total\":3,\"millis\":"), lines[2]);
+        for (String id : Arrays.asList("1", "2", "3")) {
+            assertEquals("1", redisTemplate.opsForValue().get(keys.version(id)));
+            assertFalse(redisTemplate.hasKey(keys.session(id)));
+            assertEquals(SessionStore.LOGGED_OUT, sessionStore.check(id, "g", "t" + id, 0));
+        }
+    }
+
+    @Test
+    void issuedBeforeIsStoredAndFutureCutoffRejected() {
+        long future = System.currentTimeMillis() + AdminController.MAX_CLOCK_SKEW + 60_000;
+        assertEquals(HttpStatus.BAD_REQUEST, revoke(ADMIN_KEY, "{\"issuedBefore\":" + future + "}").getStatusCode());
+        assertEquals(0, sessionStore.revokedBefore());
+
+        long cutoff = System.currentTimeMillis();
+        ResponseEntity<String> response = revoke(ADMIN_KEY, "{\"issuedBefore\":" + cutoff + "}");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getBody().contains("\"issuedBefore\":" + cutoff), response.getBody());
+        assertEquals(cutoff, sessionStore.revokedBefore());
+    }
+}
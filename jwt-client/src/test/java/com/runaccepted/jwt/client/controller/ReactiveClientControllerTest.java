@@ -0,0 +1,143 @@
+package com.runaccepted.jwt.client.controller;
+
+import com.runaccepted.jwt.api.constant.JwtConstant;
+import com.runaccepted.jwt.client.EmbeddedRedis;
+import com.runaccepted.jwt.client.session.SessionKeys;
+import com.runaccepted.jwt.client.utils.JwtUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 响应式模式下的登录、重新登录、登出，会话写入本地redis
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "spring.cloud.nacos.discovery.enabled=false",
+                "jwt.event.file=target/reactive-client-test/events.log"})
+@ActiveProfiles("reactive")
+class ReactiveClientControllerTest {
+
+    private static final String CREDENTIALS = "{\"username\":\"admin\",\"password\":\"123456\"}";
+
+    private static EmbeddedRedis redis;
+
+    @Autowired
+    WebTestClient webClient;
+
+    @Autowired
+    JwtUtils jwtUtils;
+
+    @Autowired
+    SessionKeys keys;
+
+    @Autowired
+    StringRedisTemplate redisTemplate;
+
+    @Value("${login.id}")
+    String id;
+
+    @DynamicPropertySource
+    static void redisProperties(DynamicPropertyRegistry registry) {
+        redis = EmbeddedRedis.start();
+        registry.add("spring.redis.host", () -> "127.0.0.1");
+        registry.add("spring.redis.port", redis::getPort);
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        redis.stop();
+    }
+
+    @BeforeEach
+    void flush() {
+        redisTemplate.getConnectionFactory().getConnection().flushAll();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> post(String path, String body) {
+        return webClient.post().uri(path)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Map.class)
+                .returnResult().getResponseBody();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String token(Map<String, Object> response) {
+        assertEquals(20000, response.get("code"), String.valueOf(response));
+        return (String) ((Map<String, Object>) response.get("data")).get("token");
+    }
+
+    @Test
+    void secondLoginIsRejected() {
+        String token = token(post("/jwt-client/login", CREDENTIALS));
+        assertEquals(0, jwtUtils.getPayloadFromToken(token).getVersion());
+        assertEquals(token, redisTemplate.opsForValue().get(keys.session(id)));
+
+        Map<String, Object> second = post("/jwt-client/login", CREDENTIALS);
+        assertEquals(20001, second.get("code"));
+        assertEquals("admin 已经登录！", second.get("message"));
+        assertEquals(token, redisTemplate.opsForValue().get(keys.session(id)));
+    }
+
+    @Test
+    void wrongPasswordIsRejected() {
+        Map<String, Object> response = post("/jwt-client/login", "{\"username\":\"admin\",\"password\":\"x\"}");
+        assertEquals(20001, response.get("code"));
+        assertEquals("账号或密码错误", response.get("message"));
+    }
+
+    @Test
+    void staleVersionIsResignedWithCurrentVersion() {
+        //其他节点登出后版本为5，本节点记录的版本已过时
+        redisTemplate.opsForValue().set(keys.version(id), "5");
+
+        String token = token(post("/jwt-client/login", CREDENTIALS));
+
+        assertEquals(5, jwtUtils.getPayloadFromToken(token).getVersion());
+        assertEquals(token, redisTemplate.opsForValue().get(keys.session(id)));
+    }
+
+    @Test
+    void reloginOverridesActiveSession() {
+        String first = token(post("/jwt-client/login", CREDENTIALS));
+
+        String second = token(post("/jwt-client/relogin", CREDENTIALS));
+
+        long version = jwtUtils.getPayloadFromToken(second).getVersion();
+        assertEquals(jwtUtils.getPayloadFromToken(first).getVersion() + 1, version);
+        assertEquals(String.valueOf(version), redisTemplate.opsForValue().get(keys.version(id)));
+        assertEquals(second, redisTemplate.opsForValue().get(keys.session(id)));
+    }
+
+    @Test
+    void logoutAllowsNextLoginWithNewVersion() {
+        String token = token(post("/jwt-client/login", CREDENTIALS));
+
+        webClient.get().uri("/jwt-client/logout")
+                .header(JwtConstant.tokenHeader, token)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.code").isEqualTo(20000);
+        assertEquals("1", redisTemplate.opsForValue().get(keys.version(id)));
+
+        String next = token(post("/jwt-client/login", CREDENTIALS));
+        assertEquals(1, jwtUtils.getPayloadFromToken(next).getVersion());
+    }
+}
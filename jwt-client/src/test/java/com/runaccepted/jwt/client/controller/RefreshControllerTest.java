@@ -0,0 +1,102 @@
+package com.runaccepted.jwt.client.controller;
+
+import com.runaccepted.jwt.api.entity.Admin;
+import com.runaccepted.jwt.client.utils.AdminKey;
+import com.runaccepted.jwt.client.utils.JwtUtils;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 修改外部配置文件后调用刷新接口，不重启上下文更换签发密钥
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        //命令行参数，刷新时按它重新读取配置文件
+        args = "--spring.config.additional-location=file:target/refresh-test/client.properties",
+        properties = {
+                "spring.cloud.nacos.discovery.enabled=false",
+                "jwt.admin.key=" + RefreshControllerTest.ADMIN_KEY,
+                "jwt.event.file=target/refresh-test/client-events.log"})
+@ActiveProfiles("memory")
+class RefreshControllerTest {
+
+    static final String ADMIN_KEY = "test-admin-key";
+
+    private static final Path CONFIG = Paths.get("target/refresh-test/client.properties");
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    JwtUtils jwtUtils;
+
+    @BeforeAll
+    static void writeInitialConfig() throws IOException {
+        writeConfig("k1", "first-secret-0123456789abcdef0123");
+    }
+
+    private static void writeConfig(String kid, String secret) throws IOException {
+        Files.createDirectories(CONFIG.getParent());
+        Files.write(CONFIG, Arrays.asList(
+                "jwt.keyring.legacy-enabled=false",
+                "jwt.keyring.active=" + kid,
+                "jwt.keyring.keys[0].kid=" + kid,
+                "jwt.keyring.keys[0].alg=HS256",
+                "jwt.keyring.keys[0].secret=" + Base64.getEncoder().encodeToString(secret.getBytes(StandardCharsets.UTF_8))),
+                StandardCharsets.UTF_8);
+    }
+
+    private static Admin admin() {
+        Admin admin = new Admin();
+        admin.setId("1");
+        admin.setUsername("admin");
+        return admin;
+    }
+
+    private ResponseEntity<String> refresh(String key) {
+        HttpHeaders headers = new HttpHeaders();
+        if (key != null) {
+            headers.set(AdminKey.HEADER, key);
+        }
+        return restTemplate.postForEntity("/jwt-client/admin/refresh", new HttpEntity<>(headers), String.class);
+    }
+
+    @Test
+    void refreshRotatesKeyWithoutRestart() throws IOException {
+        String oldToken = jwtUtils.generateToken(admin());
+        assertNotNull(jwtUtils.getPayloadFromToken(oldToken));
+
+        writeConfig("k2", "second-secret-0123456789abcdef012");
+
+        assertEquals(HttpStatus.FORBIDDEN, refresh(null).getStatusCode());
+        assertEquals(HttpStatus.FORBIDDEN, refresh("wrong-key").getStatusCode());
+        assertNotNull(jwtUtils.getPayloadFromToken(oldToken));
+
+        ResponseEntity<String> response = refresh(ADMIN_KEY);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getBody().contains("jwt.keyring.active"), response.getBody());
+
+        assertNull(jwtUtils.getPayloadFromToken(oldToken));
+        assertEquals("admin", jwtUtils.getPayloadFromToken(jwtUtils.generateToken(admin())).getUsername());
+    }
+}
@@ -0,0 +1,102 @@
+package com.runaccepted.jwt.client.session;
+
+import com.runaccepted.jwt.api.session.SessionStore;
+import com.runaccepted.jwt.client.EmbeddedRedis;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * ReactiveRedisSessionStore与RedisSessionStore使用相同的脚本，结果相同
+ */
+class ReactiveRedisSessionStoreTest {
+
+    private static final String ID = "1249426830067269633";
+
+    private static EmbeddedRedis redis;
+
+    private static LettuceConnectionFactory connectionFactory;
+
+    private StringRedisTemplate redisTemplate;
+
+    private SessionKeys keys;
+
+    private ReactiveRedisSessionStore store;
+
+    @BeforeAll
+    static void startRedis() {
+        redis = EmbeddedRedis.start();
+        connectionFactory = redis.connectionFactory();
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        connectionFactory.destroy();
+        redis.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.getConnectionFactory().getConnection().flushAll();
+        keys = RedisSessionStoreTest.keys();
+        store = new ReactiveRedisSessionStore();
+        ReflectionTestUtils.setField(store, "keys", keys);
+        ReflectionTestUtils.setField(store, "redisTemplate", new ReactiveStringRedisTemplate(connectionFactory));
+        ReflectionTestUtils.setField(store, "hints", RedisSessionStoreTest.hints());
+    }
+
+    @Test
+    void secondLoginIsRejected() {
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "t1", 0, 60_000, false).block());
+        assertEquals(SessionStore.LOGGED_IN, store.login(ID, "admin", "t2", 0, 60_000, false).block());
+        assertEquals("t1", redisTemplate.opsForValue().get(keys.session(ID)));
+    }
+
+    @Test
+    void staleVersionReturnsCurrentVersion() {
+        redisTemplate.opsForValue().set(keys.version(ID), "4");
+        long version = store.version(ID).block();
+        assertEquals(0, version);
+
+        assertEquals(SessionStore.STALE, store.login(ID, "admin", "t1", version, 60_000, false).block());
+        assertEquals(4, store.version(ID).block());
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "t2", 4, 60_000, false).block());
+        assertEquals("t2", redisTemplate.opsForValue().get(keys.session(ID)));
+    }
+
+    @Test
+    void reloginOverridesActiveSession() {
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "t1", 0, 60_000, false).block());
+        redisTemplate.opsForHash().put(keys.getJwtToken(), ID, "t1");
+
+        long version = store.revoke(ID, 60_000).block();
+        assertEquals(1, version);
+        assertEquals(1, store.version(ID).block());
+        assertFalse(redisTemplate.hasKey(keys.username(ID)));
+        assertNull(redisTemplate.opsForHash().get(keys.getJwtToken(), ID));
+
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "concurrent", 1, 60_000, false).block());
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "t2", version, 60_000, true).block());
+        assertEquals("t2", redisTemplate.opsForValue().get(keys.session(ID)));
+    }
+
+    @Test
+    void refreshBlacklistsOldGroup() {
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "t1", 0, 60_000, false).block());
+
+        store.refresh(ID, "g1", "admin", "t2", 60_000).block();
+
+        assertEquals("1", redisTemplate.opsForValue().get(keys.blacklist(ID, "g1")));
+        assertEquals("t2", redisTemplate.opsForValue().get(keys.session(ID)));
+    }
+}
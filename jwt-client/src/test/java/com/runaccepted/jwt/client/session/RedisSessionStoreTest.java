@@ -0,0 +1,213 @@
+package com.runaccepted.jwt.client.session;
+
+import com.runaccepted.jwt.api.session.SessionStore;
+import com.runaccepted.jwt.client.EmbeddedRedis;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * RedisSessionStore与login.lua、refresh.lua、revoke.lua在本地redis上的行为
+ */
+class RedisSessionStoreTest {
+
+    private static final String ID = "1249426830067269633";
+
+    private static EmbeddedRedis redis;
+
+    private static LettuceConnectionFactory connectionFactory;
+
+    private StringRedisTemplate redisTemplate;
+
+    private SessionKeys keys;
+
+    private VersionHints hints;
+
+    private RedisSessionStore store;
+
+    @BeforeAll
+    static void startRedis() {
+        redis = EmbeddedRedis.start();
+        connectionFactory = redis.connectionFactory();
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        connectionFactory.destroy();
+        redis.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.getConnectionFactory().getConnection().flushAll();
+        keys = keys();
+        hints = hints();
+        store = new RedisSessionStore();
+        ReflectionTestUtils.setField(store, "keys", keys);
+        ReflectionTestUtils.setField(store, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(store, "hints", hints);
+    }
+
+    /**
+     * 与application.properties相同的key格式
+     */
+    static SessionKeys keys() {
+        SessionKeys keys = new SessionKeys();
+        ReflectionTestUtils.setField(keys, "jwtUsername", "JWT_USERNAME::{%s}");
+        ReflectionTestUtils.setField(keys, "jwtBlacklist", "JWT_BLACKLIST::{%s}:%s");
+        ReflectionTestUtils.setField(keys, "jwtSession", "JWT_SESSION::{%s}");
+        ReflectionTestUtils.setField(keys, "jwtVersion", "JWT_VERSION::{%s}");
+        ReflectionTestUtils.setField(keys, "jwtToken", "JWT_TOKEN");
+        ReflectionTestUtils.setField(keys, "jwtTokenLegacy", true);
+        ReflectionTestUtils.setField(keys, "jwtSessionChannel", "JWT_SESSION_CHANNEL");
+        ReflectionTestUtils.setField(keys, "jwtRevokeBefore", "JWT_REVOKED_BEFORE");
+        ReflectionTestUtils.setField(keys, "jwtRevokeChannel", "JWT_REVOKE_CHANNEL");
+        return keys;
+    }
+
+    static VersionHints hints() {
+        VersionHints hints = new VersionHints();
+        ReflectionTestUtils.setField(hints, "size", 1024);
+        hints.init();
+        return hints;
+    }
+
+    @Test
+    void secondLoginIsRejectedUntilRevoked() {
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "t1", 0, 60_000, false));
+        assertEquals("admin", redisTemplate.opsForValue().get(keys.username(ID)));
+        assertEquals("t1", redisTemplate.opsForValue().get(keys.session(ID)));
+        assertEquals(SessionStore.ALLOW, store.check(ID, "g1", "t1", 0));
+
+        assertEquals(SessionStore.LOGGED_IN, store.login(ID, "admin", "t2", 0, 60_000, false));
+        assertEquals("t1", redisTemplate.opsForValue().get(keys.session(ID)));
+
+        assertEquals(1, store.revoke(ID, 60_000));
+        assertEquals(SessionStore.LOGGED_OUT, store.check(ID, "g1", "t1", 0));
+        assertFalse(redisTemplate.hasKey(keys.username(ID)));
+        assertFalse(redisTemplate.hasKey(keys.session(ID)));
+    }
+
+    @Test
+    void staleVersionReturnsCurrentVersion() {
+        //其他节点登出过，本节点记录的版本仍为0
+        redisTemplate.opsForValue().set(keys.version(ID), "3");
+        assertEquals(0, store.version(ID));
+
+        assertEquals(SessionStore.STALE, store.login(ID, "admin", "t1", store.version(ID), 60_000, false));
+        assertFalse(redisTemplate.hasKey(keys.session(ID)));
+        //脚本返回的当前版本用于重新签发
+        assertEquals(3, store.version(ID));
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "t2", store.version(ID), 60_000, false));
+        assertEquals(SessionStore.ALLOW, store.check(ID, "g", "t2", 3));
+    }
+
+    @Test
+    void versionAheadOfRedisIsStale() {
+        //版本号已过期，本节点记录的版本比redis中的新
+        hints.set(ID, 5);
+        assertEquals(SessionStore.STALE, store.login(ID, "admin", "t1", 5, 60_000, false));
+        assertEquals(0, store.version(ID));
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "t2", 0, 60_000, false));
+    }
+
+    @Test
+    void reloginOverridesActiveSession() {
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "t1", 0, 60_000, false));
+
+        long version = store.revoke(ID, 60_000);
+        assertEquals(1, version);
+        assertEquals(1, store.version(ID));
+        //并发登录在revoke之后写入了用户名，重新登录仍然覆盖
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "concurrent", 1, 60_000, false));
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "t2", version, 60_000, true));
+
+        assertEquals("t2", redisTemplate.opsForValue().get(keys.session(ID)));
+        assertEquals(SessionStore.ALLOW, store.check(ID, "g2", "t2", 1));
+        assertEquals(SessionStore.LOGGED_OUT, store.check(ID, "g1", "t1", 0));
+        assertEquals(SessionStore.MISMATCH, store.check(ID, "g", "concurrent", 1));
+    }
+
+    @Test
+    void refreshBlacklistsOldGroupAndWritesNewToken() {
+        assertEquals(SessionStore.CREATED, store.login(ID, "admin", "t1", 0, 60_000, false));
+
+        store.refresh(ID, "g1", "admin", "t2", 60_000);
+
+        assertEquals("1", redisTemplate.opsForValue().get(keys.blacklist(ID, "g1")));
+        assertEquals("t2", redisTemplate.opsForValue().get(keys.session(ID)));
+        assertEquals(SessionStore.LOGGED_OUT, store.check(ID, "g1", "t1", 0));
+        assertEquals(SessionStore.ALLOW, store.check(ID, "g2", "t2", 0));
+        long ttl = redisTemplate.getExpire(keys.blacklist(ID, "g1"), TimeUnit.MILLISECONDS);
+        assertTrue(ttl > 0 && ttl <= 60_000, String.valueOf(ttl));
+    }
+
+    @Test
+    void revokeAllPipelinesEveryUser() throws InterruptedException {
+        List<String> ids = Arrays.asList("1", "2", "3");
+        for (String id : ids) {
+            assertEquals(SessionStore.CREATED, store.login(id, "admin" + id, "t" + id, 0, 60_000, false));
+            redisTemplate.opsForHash().put(keys.getJwtToken(), id, "t" + id);
+        }
+        store.revoke("3", 60_000);
+
+        RedisClient client = RedisClient.create("redis://127.0.0.1:" + redis.getPort());
+        BlockingQueue<String> published = new LinkedBlockingQueue<>();
+        try (StatefulRedisPubSubConnection<String, String> subscriber = client.connectPubSub()) {
+            subscriber.addListener(new RedisPubSubAdapter<String, String>() {
+                @Override
+                public void message(String channel, String message) {
+                    published.add(message);
+                }
+            });
+            subscriber.sync().subscribe(keys.getJwtSessionChannel());
+
+            store.revokeAll(ids, 60_000);
+
+            for (String id : ids) {
+                assertEquals(id, published.poll(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            client.shutdown();
+        }
+
+        //与逐个revoke相同
+        assertEquals("1", redisTemplate.opsForValue().get(keys.version("1")));
+        assertEquals("1", redisTemplate.opsForValue().get(keys.version("2")));
+        assertEquals("2", redisTemplate.opsForValue().get(keys.version("3")));
+        for (String id : ids) {
+            assertFalse(redisTemplate.hasKey(keys.username(id)));
+            assertFalse(redisTemplate.hasKey(keys.session(id)));
+            assertNull(redisTemplate.opsForHash().get(keys.getJwtToken(), id));
+            long ttl = redisTemplate.getExpire(keys.version(id), TimeUnit.MILLISECONDS);
+            assertTrue(ttl > 0 && ttl <= 60_000, String.valueOf(ttl));
+            assertEquals(SessionStore.LOGGED_OUT, store.check(id, "g", "t" + id, 0));
+        }
+    }
+
+    @Test
+    void revokeIssuedBeforeIsReadBack() {
+        assertEquals(0, store.revokedBefore());
+        store.revokeIssuedBefore(1_700_000_000_000L, 60_000);
+        assertEquals(1_700_000_000_000L, store.revokedBefore());
+    }
+}
@@ -0,0 +1,42 @@
+package com.runaccepted.jwt.gateway.config;
+
+import com.runaccepted.jwt.api.event.AuthEventLog;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+@Configuration
+public class AuthEventConfiguration {
+
+    //鉴权事件日志，后台线程批量写入，关闭时写出剩余事件
+    @Bean(destroyMethod = "close")
+    public AuthEventLog authEventLog(@Value("${jwt.event.file}") String file,
+                                     @Value("${jwt.event.capacity}") int capacity,
+                                     @Value("${jwt.event.sample}") int sample) throws IOException {
+
+        Path path = Paths.get(file).toAbsolutePath();
+        Files.createDirectories(path.getParent());
+
+        return new AuthEventLog(path, capacity, sample);
+    }
+
+    //写出、丢弃的事件数以及写文件失败的批次数
+    @Bean
+    public MeterBinder authEventMetrics(AuthEventLog authEventLog){
+        return registry -> {
+            FunctionCounter.builder("jwt.auth.events", authEventLog, AuthEventLog::getWritten)
+                    .tag("result", "written").register(registry);
+            FunctionCounter.builder("jwt.auth.events", authEventLog, AuthEventLog::getDropped)
+                    .tag("result", "dropped").register(registry);
+            FunctionCounter.builder("jwt.auth.events.errors", authEventLog, AuthEventLog::getErrors)
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,30 @@
+package com.runaccepted.jwt.gateway.config;
+
+import com.runaccepted.jwt.api.session.MemorySessionStore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 进程内的会话存储（jwt.session.store=memory，见application-memory.properties）
+ */
+@Configuration
+@ConditionalOnProperty(name = "jwt.session.store", havingValue = "memory")
+public class SessionStoreConfiguration {
+
+    //过期记录由时间轮按tick批量删除，关闭时停止后台线程
+    @Bean(destroyMethod = "close")
+    public MemorySessionStore memorySessionStore(@Value("${jwt.session.memory.tick}") long tick) {
+        return new MemorySessionStore(tick);
+    }
+
+    //用户记录数，包括已过期但尚未删除的
+    @Bean
+    public MeterBinder memorySessionMetrics(MemorySessionStore memorySessionStore){
+        return registry -> Gauge.builder("jwt.session.memory.size", memorySessionStore, MemorySessionStore::size)
+                .register(registry);
+    }
+}
@@ -0,0 +1,61 @@
+package com.runaccepted.jwt.gateway.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.context.refresh.ContextRefresher;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Set;
+
+/**
+ * 重新读取配置（spring.config.additional-location等外部配置文件），不需要重启
+ *
+ * 变化的配置以EnvironmentChangeEvent通知：JwtUtils重新加载密钥环，AuthFilter重新绑定auth.skip.*并编译路由；
+ * 直接访问网关，不经过路由和GlobalFilter，请求头X-Admin-Key与jwt.admin.key一致才可调用
+ */
+@RestController
+@Slf4j
+public class RefreshController {
+
+    public static final String ADMIN_KEY_HEADER = "X-Admin-Key";
+
+    @Autowired
+    ContextRefresher contextRefresher;
+
+    //为空时接口关闭
+    @Value("${jwt.admin.key}")
+    private String adminKey;
+
+    /**
+     * 返回变化的配置项
+     */
+    @PostMapping("/jwt-gateway/admin/refresh")
+    public Mono<ResponseEntity<Set<String>>> refresh(@RequestHeader(value = ADMIN_KEY_HEADER, required = false) String key) {
+        if (!authorized(key)) {
+            return Mono.just(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
+        }
+        //重新读取配置时会创建临时的上下文，不在事件循环线程中执行
+        return Mono.fromCallable(() -> contextRefresher.refresh())
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(keys -> {
+                    log.warn("配置已刷新 变化的配置项:{}", keys);
+                    return ResponseEntity.ok(keys);
+                });
+    }
+
+    private boolean authorized(String key) {
+        if (adminKey == null || adminKey.isEmpty() || key == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(adminKey.getBytes(StandardCharsets.UTF_8), key.getBytes(StandardCharsets.UTF_8));
+    }
+}
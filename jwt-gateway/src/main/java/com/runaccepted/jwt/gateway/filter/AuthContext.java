@@ -0,0 +1,55 @@
+package com.runaccepted.jwt.gateway.filter;
+
+import lombok.Getter;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * 单次请求内已验证的token信息
+ *
+ * token只在AuthFilter中解析、验签一次，结果放入exchange属性中，
+ * 之后的判断（黑名单、免登录时间、刷新）以及下游过滤器都从这里读取
+ */
+@Getter
+public class AuthContext {
+
+    public static final String ATTRIBUTE = AuthContext.class.getName();
+
+    private final String token;
+
+    private final String id;
+
+    private final String username;
+
+    private final String group;
+
+    //毫秒
+    private final long created;
+
+    //免登录截止时间，毫秒
+    private final long holdTime;
+
+    //token过期时间，毫秒
+    private final long expiration;
+
+    //用户的token版本
+    private final long version;
+
+    public AuthContext(String token, String id, String username, String group,
+                       long created, long holdTime, long expiration, long version) {
+        this.token = token;
+        this.id = id;
+        this.username = username;
+        this.group = group;
+        this.created = created;
+        this.holdTime = holdTime;
+        this.expiration = expiration;
+        this.version = version;
+    }
+
+    /**
+     * 从exchange中取得本次请求已验证的token信息
+     */
+    public static AuthContext from(ServerWebExchange exchange) {
+        return exchange.getAttribute(ATTRIBUTE);
+    }
+}
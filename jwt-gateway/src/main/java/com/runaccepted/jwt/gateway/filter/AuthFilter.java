@@ -1,30 +1,34 @@
 package com.runaccepted.jwt.gateway.filter;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.runaccepted.jwt.api.constant.JwtConstant;
-import com.runaccepted.jwt.api.to.R;
+import com.runaccepted.jwt.api.event.AuthEventLog;
+import com.runaccepted.jwt.api.event.AuthEventType;
+import com.runaccepted.jwt.gateway.metrics.AuthMetrics;
+import com.runaccepted.jwt.gateway.metrics.AuthMetrics.Stage;
+import com.runaccepted.jwt.gateway.route.RouteMatcher;
+import com.runaccepted.jwt.gateway.route.RoutePolicy;
+import com.runaccepted.jwt.gateway.session.RevocationCutoff;
+import com.runaccepted.jwt.gateway.session.SessionVerifier;
 import com.runaccepted.jwt.gateway.utils.JwtUtils;
-import io.jsonwebtoken.Claims;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.core.Ordered;
-import org.springframework.core.io.buffer.DataBuffer;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 import org.springframework.web.server.ServerWebExchange;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.Arrays;
+import javax.annotation.PostConstruct;
+import java.util.Collections;
 import java.util.List;
 
 @Slf4j
@@ -37,18 +41,42 @@ public class AuthFilter implements GlobalFilter, Ordered {
 
     private List<String> checktoken;
 
-    @Value("${jwt.blacklist.format}")
-    private String jwtBlacklist;
-
-    @Value("${jwt.token.format}")
-    private String jwtToken;
+    //token有效期内可以登出的路由
+    private List<String> logout = Collections.singletonList("/jwt-client/logout");
 
+    //由以上配置编译的路由前缀树，配置刷新后重新编译并整体替换
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile RouteMatcher<RoutePolicy> routes =
+            RouteMatcher.<RoutePolicy>builder().defaultPolicy(RoutePolicy.FULL).build();
 
     @Autowired
     JwtUtils jwtUtils;
 
     @Autowired
-    StringRedisTemplate redisTemplate;
+    SessionVerifier sessionVerifier;
+
+    @Autowired
+    RevocationCutoff revocationCutoff;
+
+    @Autowired
+    AuthMetrics authMetrics;
+
+    @Autowired
+    AuthEventLog authEventLog;
+
+    /**
+     * 启动以及配置刷新（重新绑定auth.skip.*）后编译路由
+     */
+    @PostConstruct
+    public void compileRoutes() {
+        routes = RouteMatcher.<RoutePolicy>builder()
+                .addAll(uris, RoutePolicy.SKIP)
+                .addAll(checktoken, RoutePolicy.CHECK_ONLY)
+                .addAll(logout, RoutePolicy.LOGOUT)
+                .defaultPolicy(RoutePolicy.FULL)
+                .build();
+    }
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
@@ -61,11 +89,13 @@ public class AuthFilter implements GlobalFilter, Ordered {
         String path = request.getURI().getPath();
 
         //如果访问路径在定义过滤路径之中，直接放行
-        boolean containUri=this.uris.contains(path);
-        if (containUri){
+        long start = System.nanoTime();
+        RoutePolicy policy = routes.match(path);
+        authMetrics.record(Stage.ROUTE,start);
+        if (policy==RoutePolicy.SKIP){
+            authMetrics.pass();
             return chain.filter(exchange);
         }
-        log.error("放行路径{},当前路径 {}，是否放行 {}",Arrays.asList(uris),path,containUri);
 
         String token = "";
         //得到请求头中Authorization的token值
@@ -79,101 +109,118 @@ public class AuthFilter implements GlobalFilter, Ordered {
         if (StringUtils.isEmpty(token)){
 
             //50000: no token
-            DataBuffer dataBuffer = createResponseBody(50000,"无访问权限",response);
-
-            return response.writeWith(Flux.just(dataBuffer));
+            return reject(ErrorResponse.NO_TOKEN,response,path,null);
         }
 
-        //有token，token不合法
-        Claims claim = jwtUtils.getClaimsFromToken(token);
-        if(claim==null){
+        //有token，解析验签一次，后续判断都使用该结果
+        start = System.nanoTime();
+        AuthContext context = jwtUtils.getAuthContext(token);
+        authMetrics.record(Stage.VERIFY,start);
+        if(context==null){
             //50008: Illegal token
-            DataBuffer dataBuffer = createResponseBody(50008,"非法token",response);
-            return response.writeWith(Flux.just(dataBuffer));
+            return reject(ErrorResponse.ILLEGAL_TOKEN,response,path,null);
         }
 
-        String username = jwtUtils.getUserNameFromToken(token);
-        String id = jwtUtils.getUserIdFromToken(token);
-        String group = jwtUtils.getGroupFromToken(token);
+        String username = context.getUsername();
+        String id = context.getId();
+        String group = context.getGroup();
         //没有有效载荷，token定义为非法
         if (StringUtils.isEmpty(username)
                 ||StringUtils.isEmpty(id)
                 ||StringUtils.isEmpty(group)){
-            DataBuffer dataBuffer = createResponseBody(50008,"非法token",response);
-            return response.writeWith(Flux.just(dataBuffer));
+            return reject(ErrorResponse.ILLEGAL_TOKEN,response,path,context);
+        }
+        //批量注销的截止时间之前签发的token，只能选择再登录
+        if (revocationCutoff.isRevoked(context)){
+            //50010: Token out;
+            return reject(ErrorResponse.LOGGED_OUT,response,path,context);
         }
+        exchange.getAttributes().put(AuthContext.ATTRIBUTE,context);
 
         //token可用性判断后 才可以刷新和重新登录
-        boolean checkUri = this.checktoken.contains(path);
-        if (checkUri){
+        if (policy==RoutePolicy.CHECK_ONLY){
+            pass(path,context);
             return chain.filter(exchange);
         }
-        log.error("验证token后放行路径{},当前路径 {}，是否放行 {}",Arrays.asList(checktoken),path,checkUri);
 
 
         //有token，但已被加入黑名单,只能选择再登录
-        String key = String.format(jwtBlacklist,group);
-        String blackToken=redisTemplate.opsForValue().get(key);
-        if (!StringUtils.isEmpty(blackToken)){
-
-            //50010: Token out;
-            DataBuffer dataBuffer = createResponseBody(50010,username+" 已登出",response);
-
-            return response.writeWith(Flux.just(dataBuffer));
-        }
-
         // redis中id对应的token不存在
         // 或者请求中的token和redis中活跃的token不匹配，只能选择再登录
-        String redisToken = (String)redisTemplate.opsForHash().get(jwtToken,id);
-        //为空说明 被 注销/重新登录 操作删除
-        if (StringUtils.isEmpty(redisToken)||!redisToken.equals(token)){
-            //50010: Token out;
-            DataBuffer dataBuffer = createResponseBody(50010,username+" 信息不匹配，无法继续操作",response);
-            return response.writeWith(Flux.just(dataBuffer));
-        }
+        //两项判断由lua脚本一次往返完成
+        long sessionStart = System.nanoTime();
+        return sessionVerifier.verify(context).flatMap(status->{
+            authMetrics.record(Stage.SESSION,sessionStart);
+            if (status==SessionVerifier.LOGGED_OUT){
+
+                //50010: Token out;
+                return reject(ErrorResponse.LOGGED_OUT,response,path,context);
+            }
+            //为空说明 被 注销/重新登录 操作删除
+            if (status!=SessionVerifier.ALLOW){
+                //50010: Token out;
+                return reject(ErrorResponse.MISMATCH,response,path,context);
+            }
+            return holdOrRefresh(exchange,chain,path,context,policy);
+        });
+    }
 
+    /**
+     * 通过黑名单和活跃token验证后，判断免登录时间以及是否需要刷新token
+     */
+    private Mono<Void> holdOrRefresh(ServerWebExchange exchange, GatewayFilterChain chain,
+                                     String path, AuthContext context, RoutePolicy policy){
+
+        ServerHttpResponse response = exchange.getResponse();
         //有身份，过免登录时间
-        if(!jwtUtils.isHoldTime(token)){
+        long start = System.nanoTime();
+        boolean hold = jwtUtils.isHoldTime(context);
+        authMetrics.record(Stage.HOLD,start);
+        if(!hold){
 
             //50014: Token expired;
-            DataBuffer dataBuffer = createResponseBody(50014,"token过期",response);
-            return response.writeWith(Flux.just(dataBuffer));
+            return reject(ErrorResponse.EXPIRED,response,path,context);
         }
 
         //token有效期内，可以进行登出
-        boolean expiredTimeUri = path.equals("/jwt-client/logout");
-        if (expiredTimeUri){
+        pass(path,context);
+        if (policy==RoutePolicy.LOGOUT){
             return chain.filter(exchange);
         }
-        log.error("当前路径 {}，是否放行 {}",path,expiredTimeUri);
 
         //token 失效
-        if(jwtUtils.canRefresh(token)){
+        if(jwtUtils.canRefresh(context)){
 
-            String refreshToken =  jwtUtils.refreshToken(token);
+            start = System.nanoTime();
+            String refreshToken =  jwtUtils.refreshToken(context);
+            authMetrics.record(Stage.REFRESH,start);
+            authEventLog.publish(AuthEventType.REFRESH,0,context.getId(),context.getGroup(),path);
             //更新请求头
-            ServerHttpRequest httpRequest = request.mutate().header(JwtConstant.tokenHeader, refreshToken).build();
+            ServerHttpRequest httpRequest = exchange.getRequest().mutate().header(JwtConstant.tokenHeader, refreshToken).build();
             ServerWebExchange webExchange = exchange.mutate().request(httpRequest).build();
             return chain.filter(webExchange);
         }
         return chain.filter(exchange);
-
-
     }
 
-    private DataBuffer createResponseBody(int code,String message,ServerHttpResponse response){
+    private void pass(String path, AuthContext context){
+        authMetrics.pass();
+        authEventLog.publish(AuthEventType.PASS,0,context.getId(),context.getGroup(),path);
+    }
 
-        R result = R.error().code(code).message(message);
-        ObjectMapper objectMapper = new ObjectMapper();
-        String str="";
-        try {
-            str=objectMapper.writeValueAsString(result);
-        } catch (JsonProcessingException e) {
-           log.error("json转换错误 {}",e.getLocalizedMessage());
+    /**
+     * 拒绝请求，context为空说明没有token或token不合法
+     */
+    private Mono<Void> reject(ErrorResponse error, ServerHttpResponse response, String path, AuthContext context){
+        authMetrics.reject(error.getCodeName());
+        if (context==null){
+            authEventLog.publish(AuthEventType.REJECT,error.getCode(),null,null,path);
+            return error.write(response);
         }
-        DataBuffer dataBuffer = response.bufferFactory().wrap(str.getBytes());
-        return dataBuffer;
+        authEventLog.publish(AuthEventType.REJECT,error.getCode(),context.getId(),context.getGroup(),path);
+        return error.write(response,context.getUsername());
     }
+
     @Override
     public int getOrder() {
         return 0;
@@ -0,0 +1,120 @@
+package com.runaccepted.jwt.gateway.filter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.runaccepted.jwt.api.to.R;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 网关拒绝请求时的响应体，启动时序列化一次，之后共享只读的缓冲区
+ *
+ * 带用户名的响应拆成用户名前、后两段，只对用户名做json转义
+ */
+final class ErrorResponse {
+
+    //50000: no token
+    static final ErrorResponse NO_TOKEN = of(50000, "无访问权限");
+
+    //50008: Illegal token
+    static final ErrorResponse ILLEGAL_TOKEN = of(50008, "非法token");
+
+    //50010: Token out;
+    static final ErrorResponse LOGGED_OUT = withUsername(50010, " 已登出");
+
+    //50010: Token out;
+    static final ErrorResponse MISMATCH = withUsername(50010, " 信息不匹配，无法继续操作");
+
+    //50014: Token expired;
+    static final ErrorResponse EXPIRED = of(50014, "token过期");
+
+    //50013: Payload too large
+    static final ErrorResponse PAYLOAD_TOO_LARGE = of(50013, "请求体过大");
+
+    //50029: Too many requests
+    static final ErrorResponse TOO_MANY_REQUESTS = of(50029, "请求过于频繁，请稍后再试");
+
+    private static final String USERNAME = "__USERNAME__";
+
+    private final int code;
+
+    //返回码的字符串形式，作为监控标签
+    private final String codeName;
+
+    private final ByteBuffer prefix;
+
+    //不带用户名的响应为null
+    private final ByteBuffer suffix;
+
+    private ErrorResponse(int code, byte[] prefix, byte[] suffix) {
+        this.code = code;
+        this.codeName = String.valueOf(code);
+        this.prefix = ByteBuffer.wrap(prefix).asReadOnlyBuffer();
+        this.suffix = suffix == null ? null : ByteBuffer.wrap(suffix).asReadOnlyBuffer();
+    }
+
+    private static ErrorResponse of(int code, String message) {
+        return new ErrorResponse(code, serialize(code, message), null);
+    }
+
+    private static ErrorResponse withUsername(int code, String message) {
+        byte[] body = serialize(code, USERNAME + message);
+        byte[] placeholder = USERNAME.getBytes(StandardCharsets.UTF_8);
+        int at = indexOf(body, placeholder);
+        byte[] prefix = new byte[at];
+        byte[] suffix = new byte[body.length - at - placeholder.length];
+        System.arraycopy(body, 0, prefix, 0, prefix.length);
+        System.arraycopy(body, at + placeholder.length, suffix, 0, suffix.length);
+        return new ErrorResponse(code, prefix, suffix);
+    }
+
+    private static byte[] serialize(int code, String message) {
+        try {
+            return new ObjectMapper().writeValueAsBytes(R.error().code(code).message(message));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("json转换错误", e);
+        }
+    }
+
+    private static int indexOf(byte[] body, byte[] target) {
+        outer:
+        for (int i = 0; i <= body.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (body[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        throw new IllegalStateException("响应模板中没有用户名");
+    }
+
+    int getCode() {
+        return code;
+    }
+
+    String getCodeName() {
+        return codeName;
+    }
+
+    Mono<Void> write(ServerHttpResponse response) {
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(prefix.duplicate())));
+    }
+
+    Mono<Void> write(ServerHttpResponse response, String username) {
+        if (suffix == null) {
+            return write(response);
+        }
+        DataBufferFactory factory = response.bufferFactory();
+        byte[] name = JsonStringEncoder.getInstance().quoteAsUTF8(username == null ? "null" : username);
+        return response.writeWith(Flux.just(factory.wrap(prefix.duplicate()),
+                factory.wrap(name),
+                factory.wrap(suffix.duplicate())));
+    }
+}
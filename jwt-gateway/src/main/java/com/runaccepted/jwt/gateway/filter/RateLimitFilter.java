@@ -0,0 +1,293 @@
+package com.runaccepted.jwt.gateway.filter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.runaccepted.jwt.api.constant.JwtConstant;
+import com.runaccepted.jwt.api.event.AuthEventLog;
+import com.runaccepted.jwt.api.event.AuthEventType;
+import com.runaccepted.jwt.gateway.metrics.AuthMetrics;
+import com.runaccepted.jwt.gateway.ratelimit.RateLimitPolicy;
+import com.runaccepted.jwt.gateway.ratelimit.RedisSlidingWindow;
+import com.runaccepted.jwt.gateway.ratelimit.TokenBuckets;
+import com.runaccepted.jwt.gateway.route.RouteMatcher;
+import com.runaccepted.jwt.gateway.utils.JwtUtils;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 登录和刷新token路由的限流，在AuthFilter之前执行
+ *
+ * 先按ip取令牌，不读取请求体；通过后再按用户名取令牌，登录的用户名从请求体中读取，
+ * 刷新token的用户名从token中读取（验签结果由AuthFilter复用）；
+ * 令牌桶在进程内，不访问redis，开启jwt.ratelimit.redis.enabled后再按用户名计入集群范围的滑动窗口
+ */
+@Slf4j
+@Component
+@ConfigurationProperties(prefix = "jwt.ratelimit")
+@Data
+public class RateLimitFilter implements GlobalFilter, Ordered, MeterBinder {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private static final byte[] EMPTY_BODY = new byte[0];
+
+    //关闭时不限流（压测时jwt-load默认关闭）
+    private boolean enabled = true;
+
+    //携带账号密码的路由
+    private List<String> login = Arrays.asList("/jwt-client/login", "/jwt-client/relogin");
+
+    //携带token的路由
+    private List<String> token = Collections.singletonList("/jwt-client/token/refresh");
+
+    //每个ip每秒补充的令牌数、桶的容量
+    private double ipRate = 5;
+    private int ipBurst = 20;
+
+    //每个用户名每秒补充的令牌数、桶的容量
+    private double userRate = 0.2;
+    private int userBurst = 5;
+
+    //ip和用户名各自最多保存的桶数
+    private int size = 65536;
+
+    //按X-Forwarded-For中的第一个地址限流，只在网关前有可信的代理时开启
+    private boolean forwarded;
+
+    //登录请求体的最大长度，超过时返回413（不读取超过的部分，也不会绕过按用户名的限流）
+    private int maxBody = 4096;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile RouteMatcher<RateLimitPolicy> routes =
+            RouteMatcher.<RateLimitPolicy>builder().defaultPolicy(RateLimitPolicy.NONE).build();
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile TokenBuckets ipBuckets;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile TokenBuckets userBuckets;
+
+    @Autowired
+    JwtUtils jwtUtils;
+
+    @Autowired
+    AuthMetrics authMetrics;
+
+    @Autowired
+    AuthEventLog authEventLog;
+
+    //只在jwt.ratelimit.redis.enabled=true时存在
+    @Autowired(required = false)
+    RedisSlidingWindow slidingWindow;
+
+    /**
+     * 启动以及配置刷新（重新绑定jwt.ratelimit.*）后编译路由，令牌桶重新开始计数
+     */
+    @PostConstruct
+    public void init() {
+        routes = RouteMatcher.<RateLimitPolicy>builder()
+                .addAll(login, RateLimitPolicy.LOGIN)
+                .addAll(token, RateLimitPolicy.TOKEN)
+                .defaultPolicy(RateLimitPolicy.NONE)
+                .build();
+        ipBuckets = new TokenBuckets(ipRate, ipBurst, size);
+        userBuckets = new TokenBuckets(userRate, userBurst, size);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("jwt.ratelimit.buckets", this, filter -> filter.ipBuckets.size())
+                .description("限流令牌桶数")
+                .tag("key", "ip")
+                .register(registry);
+        Gauge.builder("jwt.ratelimit.buckets", this, filter -> filter.userBuckets.size())
+                .description("限流令牌桶数")
+                .tag("key", "user")
+                .register(registry);
+        FunctionCounter.builder("jwt.ratelimit.evictions", this, filter -> filter.ipBuckets.evictions())
+                .description("段满时被替换的令牌桶数")
+                .tag("key", "ip")
+                .register(registry);
+        FunctionCounter.builder("jwt.ratelimit.evictions", this, filter -> filter.userBuckets.evictions())
+                .description("段满时被替换的令牌桶数")
+                .tag("key", "user")
+                .register(registry);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+
+        ServerHttpRequest request = exchange.getRequest();
+        String path = request.getURI().getPath();
+
+        RateLimitPolicy policy = routes.match(path);
+        if (!enabled || policy == RateLimitPolicy.NONE) {
+            return chain.filter(exchange);
+        }
+
+        String ip = clientIp(request);
+        long wait = ip == null ? 0 : ipBuckets.tryAcquire(ip);
+        if (wait > 0) {
+            return reject(exchange.getResponse(), path, TimeUnit.NANOSECONDS.toMillis(wait));
+        }
+
+        if (policy == RateLimitPolicy.TOKEN) {
+            String jwt = request.getHeaders().getFirst(JwtConstant.tokenHeader);
+            //非法token由AuthFilter拒绝
+            AuthContext context = StringUtils.isEmpty(jwt) ? null : jwtUtils.getAuthContext(jwt);
+            return limitUser(exchange, chain, path, context == null ? null : context.getUsername(), ip);
+        }
+
+        if (request.getHeaders().getContentLength() > maxBody) {
+            return tooLarge(exchange.getResponse(), path);
+        }
+
+        //读取请求体中的用户名，之后的过滤器和下游服务读取缓存的请求体；最多缓存maxBody字节
+        return DataBufferUtils.join(request.getBody(), maxBody)
+                .map(RateLimitFilter::drain)
+                .defaultIfEmpty(EMPTY_BODY)
+                .flatMap(body -> {
+                    if (body.length == 0) {
+                        return limitUser(exchange, chain, path, null, ip);
+                    }
+                    ServerHttpRequest cached = new ServerHttpRequestDecorator(request) {
+                        @Override
+                        public Flux<DataBuffer> getBody() {
+                            return Flux.defer(() -> Flux.just(exchange.getResponse().bufferFactory().wrap(body)));
+                        }
+                    };
+                    return limitUser(exchange.mutate().request(cached).build(), chain, path, username(body), ip);
+                })
+                //分块传输的请求体超过maxBody
+                .onErrorResume(DataBufferLimitException.class, e -> tooLarge(exchange.getResponse(), path));
+    }
+
+    /**
+     * 按用户名限流，没有用户名时集群范围的计数按ip
+     */
+    private Mono<Void> limitUser(ServerWebExchange exchange, GatewayFilterChain chain,
+                                 String path, String username, String ip) {
+        if (!StringUtils.isEmpty(username)) {
+            long wait = userBuckets.tryAcquire(username);
+            if (wait > 0) {
+                return reject(exchange.getResponse(), path, TimeUnit.NANOSECONDS.toMillis(wait));
+            }
+        }
+        String key = StringUtils.isEmpty(username) ? ip : username;
+        if (slidingWindow == null || key == null) {
+            return chain.filter(exchange);
+        }
+        return slidingWindow.allow(key).flatMap(allowed -> allowed
+                ? chain.filter(exchange)
+                : reject(exchange.getResponse(), path, slidingWindow.retryAfter()));
+    }
+
+    private String clientIp(ServerHttpRequest request) {
+        if (forwarded) {
+            String header = request.getHeaders().getFirst("X-Forwarded-For");
+            if (!StringUtils.isEmpty(header)) {
+                int comma = header.indexOf(',');
+                return (comma < 0 ? header : header.substring(0, comma)).trim();
+            }
+        }
+        InetSocketAddress address = request.getRemoteAddress();
+        if (address == null) {
+            return null;
+        }
+        return address.getAddress() == null ? address.getHostString() : address.getAddress().getHostAddress();
+    }
+
+    private static byte[] drain(DataBuffer buffer) {
+        byte[] body = new byte[buffer.readableByteCount()];
+        buffer.read(body);
+        DataBufferUtils.release(buffer);
+        return body;
+    }
+
+    /**
+     * 请求体json第一层的username，没有或格式错误时返回null
+     */
+    private static String username(byte[] body) {
+        try (JsonParser parser = JSON.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                token = parser.nextToken();
+                if ("username".equals(field)) {
+                    return token == JsonToken.VALUE_STRING ? parser.getText() : null;
+                }
+                parser.skipChildren();
+            }
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 429，Retry-After为秒，向上取整
+     */
+    private Mono<Void> reject(ServerHttpResponse response, String path, long retryAfterMillis) {
+        ErrorResponse error = ErrorResponse.TOO_MANY_REQUESTS;
+        authMetrics.reject(error.getCodeName());
+        authEventLog.publish(AuthEventType.THROTTLE, error.getCode(), null, null, path);
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        response.getHeaders().add("Content-Type", "application/json; charset=utf-8");
+        response.getHeaders().add("Retry-After", String.valueOf(Math.max(1, (retryAfterMillis + 999) / 1000)));
+        return error.write(response);
+    }
+
+    private Mono<Void> tooLarge(ServerHttpResponse response, String path) {
+        ErrorResponse error = ErrorResponse.PAYLOAD_TOO_LARGE;
+        authMetrics.reject(error.getCodeName());
+        authEventLog.publish(AuthEventType.REJECT, error.getCode(), null, null, path);
+        response.setStatusCode(HttpStatus.PAYLOAD_TOO_LARGE);
+        response.getHeaders().add("Content-Type", "application/json; charset=utf-8");
+        return error.write(response);
+    }
+
+    @Override
+    public int getOrder() {
+        //AuthFilter为0
+        return -1;
+    }
+}
@@ -0,0 +1,96 @@
+package com.runaccepted.jwt.gateway.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AuthFilter各阶段的耗时以及鉴权结果计数
+ *
+ * jwt.auth.stage{stage}  各阶段耗时，带直方图，可在prometheus中计算p99
+ * jwt.auth.outcome{code} 鉴权结果，code为拒绝时的返回码，放行为pass
+ *
+ * 计时器和计数器启动时创建，请求中不再按标签查找
+ */
+@Component
+public class AuthMetrics {
+
+    /**
+     * 鉴权阶段
+     */
+    public enum Stage {
+        //路由匹配
+        ROUTE,
+        //token解析验签
+        VERIFY,
+        //黑名单、版本号、活跃token判断，由一次lua脚本完成
+        SESSION,
+        //免登录时间判断
+        HOLD,
+        //重新签发token
+        REFRESH
+    }
+
+    public static final String PASS = "pass";
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private final Map<Stage, Timer> stages = new EnumMap<>(Stage.class);
+
+    private final Map<String, Counter> outcomes = new ConcurrentHashMap<>();
+
+    private Counter pass;
+
+    @PostConstruct
+    public void init() {
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, Timer.builder("jwt.auth.stage")
+                    .description("AuthFilter各阶段耗时")
+                    .tag("stage", stage.name().toLowerCase())
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(500))
+                    .maximumExpectedValue(Duration.ofSeconds(2))
+                    .register(meterRegistry));
+        }
+        pass = outcome(PASS);
+    }
+
+    /**
+     * @param start 阶段开始时的System.nanoTime()
+     */
+    public void record(Stage stage, long start) {
+        stages.get(stage).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    public void pass() {
+        pass.increment();
+    }
+
+    /**
+     * @param code 返回码，调用方缓存其字符串形式
+     */
+    public void reject(String code) {
+        Counter counter = outcomes.get(code);
+        if (counter == null) {
+            counter = outcome(code);
+        }
+        counter.increment();
+    }
+
+    private Counter outcome(String code) {
+        return outcomes.computeIfAbsent(code, c -> Counter.builder("jwt.auth.outcome")
+                .description("鉴权结果")
+                .tag("code", c)
+                .register(meterRegistry));
+    }
+}
@@ -0,0 +1,16 @@
+package com.runaccepted.jwt.gateway.ratelimit;
+
+/**
+ * 路由的限流策略
+ */
+public enum RateLimitPolicy {
+
+    //不限流
+    NONE,
+
+    //按ip和请求体中的用户名限流 jwt.ratelimit.login
+    LOGIN,
+
+    //按ip和token中的用户名限流 jwt.ratelimit.token
+    TOKEN
+}
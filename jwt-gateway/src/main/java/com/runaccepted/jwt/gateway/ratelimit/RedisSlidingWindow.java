@@ -0,0 +1,78 @@
+package com.runaccepted.jwt.gateway.ratelimit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+
+/**
+ * 多个网关节点共享的滑动窗口计数，jwt.ratelimit.redis.enabled=true时启用
+ *
+ * 当前窗口和上一个窗口各一个计数，上一个窗口的计数按未过去的比例计入，
+ * 判断和计数由一个lua脚本一次往返完成；
+ * 只在本地令牌桶放行后调用，redis不可用时放行，由本地令牌桶限流
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "jwt.ratelimit.redis.enabled", havingValue = "true")
+public class RedisSlidingWindow {
+
+    //每个窗口内允许的请求数
+    @Value("${jwt.ratelimit.redis.limit}")
+    private long limit;
+
+    //窗口长度，毫秒
+    @Value("${jwt.ratelimit.redis.window}")
+    private long window;
+
+    //参数为 限流的key、窗口序号
+    @Value("${jwt.ratelimit.redis.format}")
+    private String format;
+
+    @Autowired
+    ReactiveStringRedisTemplate redisTemplate;
+
+    private DefaultRedisScript<Long> script;
+
+    @PostConstruct
+    public void init() {
+        script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/rate_limit.lua")));
+        script.setResultType(Long.class);
+    }
+
+    /**
+     * 计入一次请求，超过集群范围的上限时返回false
+     */
+    public Mono<Boolean> allow(String key) {
+        long now = System.currentTimeMillis();
+        long index = now / window;
+        String current = String.format(format, key, index);
+        String previous = String.format(format, key, index - 1);
+        return redisTemplate.execute(script, Arrays.asList(current, previous),
+                Arrays.asList(String.valueOf(limit), String.valueOf(window), String.valueOf(now - index * window)))
+                .next()
+                .map(allowed -> allowed == 1)
+                .defaultIfEmpty(true)
+                .onErrorResume(e -> {
+                    log.debug("限流计数失败，放行 {}", e.getLocalizedMessage());
+                    return Mono.just(true);
+                });
+    }
+
+    /**
+     * 被拒绝时距下一个窗口的毫秒数
+     */
+    public long retryAfter() {
+        return window - System.currentTimeMillis() % window;
+    }
+}
@@ -0,0 +1,152 @@
+package com.runaccepted.jwt.gateway.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内按key的令牌桶，不加锁
+ *
+ * 每个桶只保存一个long：下一个令牌的理论到达时间（GCRA，与令牌桶等价），取令牌为一次CAS；
+ * 槽按8个一段划分，key的hash决定所在的段，只在段内查找，段内的槽只会被替换不会清空；
+ * 段满时替换段内到达时间最早的桶（近似LRU），这样的桶通常已经装满令牌，替换后与新桶相同，
+ * 正在被限流的桶到达时间最晚，最后才会被替换
+ */
+public final class TokenBuckets {
+
+    //每段的槽数
+    private static final int STRIPE = 8;
+
+    private static final AtomicLongFieldUpdater<Bucket> TAT =
+            AtomicLongFieldUpdater.newUpdater(Bucket.class, "tat");
+
+    private final AtomicReferenceArray<Bucket> slots;
+
+    private final int mask;
+
+    //每个令牌的间隔，纳秒
+    private final long interval;
+
+    //桶满时可以连续取得的令牌数对应的时间，(burst - 1) * interval
+    private final long tolerance;
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param rate        每秒补充的令牌数
+     * @param burst       桶的容量
+     * @param maximumSize 最多保存的桶数，按段向上取2的幂
+     */
+    public TokenBuckets(double rate, int burst, int maximumSize) {
+        if (rate <= 0 || burst < 1 || maximumSize < 1 || maximumSize > 1 << 26) {
+            throw new IllegalArgumentException("令牌桶配置错误 rate:" + rate + " burst:" + burst + " size:" + maximumSize);
+        }
+        int stripes = 1;
+        while (stripes * STRIPE < maximumSize) {
+            stripes <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(stripes * STRIPE);
+        this.mask = stripes - 1;
+        this.interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rate));
+        this.tolerance = (burst - 1) * interval;
+    }
+
+    /**
+     * 取一个令牌
+     *
+     * @return 0表示取得令牌，否则为下一个令牌还需等待的纳秒数
+     */
+    public long tryAcquire(String key) {
+        return tryAcquire(key, System.nanoTime());
+    }
+
+    long tryAcquire(String key, long now) {
+        int hash = spread(key.hashCode());
+        int base = (hash & mask) * STRIPE;
+        while (true) {
+            int victim = -1;
+            Bucket expected = null;
+            for (int i = base; i < base + STRIPE; i++) {
+                Bucket bucket = slots.get(i);
+                if (bucket == null) {
+                    //槽不会被清空，之后的槽也为空
+                    victim = i;
+                    expected = null;
+                    break;
+                }
+                if (bucket.hash == hash && bucket.key.equals(key)) {
+                    return acquire(bucket, now);
+                }
+                if (expected == null || bucket.tat - expected.tat < 0) {
+                    victim = i;
+                    expected = bucket;
+                }
+            }
+            Bucket bucket = new Bucket(key, hash, now);
+            if (slots.compareAndSet(victim, expected, bucket)) {
+                if (expected != null) {
+                    evictions.increment();
+                }
+                return acquire(bucket, now);
+            }
+            //其他线程同时写入了该槽，重新查找
+        }
+    }
+
+    private long acquire(Bucket bucket, long now) {
+        while (true) {
+            long tat = bucket.tat;
+            long start = tat - now > 0 ? tat : now;
+            long wait = start - now - tolerance;
+            if (wait > 0) {
+                return wait;
+            }
+            if (TAT.compareAndSet(bucket, tat, start + interval)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 已使用的槽数，遍历所有槽，只用于监控
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 段满时被替换的桶数
+     */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x45d9f3b;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Bucket {
+
+        final String key;
+
+        final int hash;
+
+        //下一个令牌的理论到达时间，System.nanoTime()
+        volatile long tat;
+
+        Bucket(String key, int hash, long tat) {
+            this.key = key;
+            this.hash = hash;
+            this.tat = tat;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.runaccepted.jwt.gateway.route;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 按路径分段的前缀树，启动时由 auth.skip.* 配置编译，不可变
+ *
+ * 支持 * 匹配一段，** 匹配剩余的所有段；
+ * 精确的段优先于 *，* 优先于 **；
+ * 查找时不分割路径，不产生中间字符串
+ *
+ * @param <T> 路由对应的策略，如鉴权策略 RoutePolicy
+ */
+public final class RouteMatcher<T> {
+
+    private final Node<T> root;
+
+    private final T defaultPolicy;
+
+    private RouteMatcher(Node<T> root, T defaultPolicy) {
+        this.root = root;
+        this.defaultPolicy = defaultPolicy;
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * 路径对应的策略，没有匹配时返回默认策略
+     */
+    public T match(String path) {
+        T policy = match(root, path, start(path, 0));
+        return policy == null ? defaultPolicy : policy;
+    }
+
+    private static <T> T match(Node<T> node, String path, int from) {
+        if (from >= path.length()) {
+            return node.policy != null ? node.policy : node.doubleStar;
+        }
+        int end = path.indexOf('/', from);
+        if (end < 0) {
+            end = path.length();
+        }
+        int next = start(path, end);
+        Node<T> child = node.child(path, from, end);
+        if (child != null) {
+            T policy = match(child, path, next);
+            if (policy != null) {
+                return policy;
+            }
+        }
+        if (node.star != null) {
+            T policy = match(node.star, path, next);
+            if (policy != null) {
+                return policy;
+            }
+        }
+        return node.doubleStar;
+    }
+
+    /**
+     * 跳过连续的 /
+     */
+    private static int start(String path, int from) {
+        while (from < path.length() && path.charAt(from) == '/') {
+            from++;
+        }
+        return from;
+    }
+
+    private static final class Node<T> {
+
+        //按字典序排列的子节点名
+        final String[] names;
+
+        final Node<T>[] children;
+
+        final Node<T> star;
+
+        //该节点后任意路径（包括该节点本身）的策略
+        final T doubleStar;
+
+        final T policy;
+
+        Node(String[] names, Node<T>[] children, Node<T> star, T doubleStar, T policy) {
+            this.names = names;
+            this.children = children;
+            this.star = star;
+            this.doubleStar = doubleStar;
+            this.policy = policy;
+        }
+
+        Node<T> child(String path, int from, int end) {
+            int low = 0;
+            int high = names.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compare(names[mid], path, from, end);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return children[mid];
+                }
+            }
+            return null;
+        }
+
+        private static int compare(String name, String path, int from, int end) {
+            int length = Math.min(name.length(), end - from);
+            for (int i = 0; i < length; i++) {
+                int diff = name.charAt(i) - path.charAt(from + i);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return name.length() - (end - from);
+        }
+    }
+
+    public static final class Builder<T> {
+
+        private final MutableNode<T> root = new MutableNode<>();
+
+        private T defaultPolicy;
+
+        private Builder() {
+        }
+
+        public Builder<T> defaultPolicy(T policy) {
+            this.defaultPolicy = policy;
+            return this;
+        }
+
+        /**
+         * 添加路由，同一路由重复添加时保留先添加的策略
+         */
+        public Builder<T> add(String pattern, T policy) {
+            if (pattern == null || pattern.trim().isEmpty()) {
+                return this;
+            }
+            MutableNode<T> node = root;
+            List<String> segments = segments(pattern.trim());
+            for (int i = 0; i < segments.size(); i++) {
+                String segment = segments.get(i);
+                if ("**".equals(segment)) {
+                    if (i != segments.size() - 1) {
+                        throw new IllegalArgumentException("** 只能出现在路由末尾 " + pattern);
+                    }
+                    if (node.doubleStar == null) {
+                        node.doubleStar = policy;
+                    }
+                    return this;
+                }
+                if ("*".equals(segment)) {
+                    if (node.star == null) {
+                        node.star = new MutableNode<>();
+                    }
+                    node = node.star;
+                } else {
+                    node = node.children.computeIfAbsent(segment, s -> new MutableNode<>());
+                }
+            }
+            if (node.policy == null) {
+                node.policy = policy;
+            }
+            return this;
+        }
+
+        public Builder<T> addAll(List<String> patterns, T policy) {
+            if (patterns != null) {
+                for (String pattern : patterns) {
+                    add(pattern, policy);
+                }
+            }
+            return this;
+        }
+
+        public RouteMatcher<T> build() {
+            return new RouteMatcher<>(root.freeze(), defaultPolicy);
+        }
+
+        private static List<String> segments(String pattern) {
+            List<String> segments = new ArrayList<>();
+            for (String segment : pattern.split("/")) {
+                if (!segment.isEmpty()) {
+                    segments.add(segment);
+                }
+            }
+            return segments;
+        }
+    }
+
+    private static final class MutableNode<T> {
+
+        final Map<String, MutableNode<T>> children = new TreeMap<>();
+
+        MutableNode<T> star;
+
+        T doubleStar;
+
+        T policy;
+
+        @SuppressWarnings("unchecked")
+        Node<T> freeze() {
+            String[] names = children.keySet().toArray(new String[0]);
+            Node<T>[] nodes = new Node[names.length];
+            for (int i = 0; i < names.length; i++) {
+                nodes[i] = children.get(names[i]).freeze();
+            }
+            return new Node<>(names, nodes, star == null ? null : star.freeze(), doubleStar, policy);
+        }
+    }
+}
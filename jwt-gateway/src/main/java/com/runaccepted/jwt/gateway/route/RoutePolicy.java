@@ -0,0 +1,19 @@
+package com.runaccepted.jwt.gateway.route;
+
+/**
+ * 路由的鉴权策略
+ */
+public enum RoutePolicy {
+
+    //不验证token，直接放行 auth.skip.uris
+    SKIP,
+
+    //只验证token格式和签名 auth.skip.checktoken
+    CHECK_ONLY,
+
+    //验证token状态和免登录时间后放行，不刷新token auth.skip.logout
+    LOGOUT,
+
+    //完整验证，必要时刷新token
+    FULL
+}
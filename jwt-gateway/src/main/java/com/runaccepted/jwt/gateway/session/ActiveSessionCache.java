@@ -0,0 +1,150 @@
+package com.runaccepted.jwt.gateway.session;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.runaccepted.jwt.api.session.SessionStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 网关本地的活跃token缓存 id -> token指纹
+ *
+ * 大小有上限（W-TinyLFU淘汰），写入后短时间过期；
+ * jwt-client在 登录/重新登录/登出/刷新 后向jwt.session.channel发布用户id，
+ * 网关收到后立即删除对应的缓存，保证注销及时生效
+ */
+@Slf4j
+@Component
+public class ActiveSessionCache implements MeterBinder {
+
+    @Value("${jwt.session.channel}")
+    private String channel;
+
+    @Value("${jwt.session.cache.size}")
+    private long maximumSize;
+
+    //毫秒
+    @Value("${jwt.session.cache.ttl}")
+    private long ttl;
+
+    @Autowired
+    ReactiveStringRedisTemplate redisTemplate;
+
+    //只在jwt.session.store=memory时存在，此时会话直接从进程内存储读取，不订阅失效通知
+    @Autowired(required = false)
+    SessionStore sessionStore;
+
+    private Cache<String, Long> cache;
+
+    private Disposable subscription;
+
+    //失效次数，查询redis期间如果有失效通知，结果不再写入缓存
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        if (sessionStore != null) {
+            return;
+        }
+
+        //订阅断开期间可能丢失消息，每次（重新）订阅时清空缓存
+        subscription = redisTemplate.listenToChannel(channel)
+                .doOnSubscribe(s -> invalidateAll())
+                .retryBackoff(Long.MAX_VALUE, Duration.ofSeconds(1), Duration.ofSeconds(30))
+                .subscribe(message -> invalidate(message.getMessage()),
+                        e -> log.warn("会话失效通知订阅结束 {}", e.getLocalizedMessage()));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    /**
+     * 命中率、淘汰次数等，由actuator注册
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "jwt.session.active");
+    }
+
+    /**
+     * 缓存中id对应的token是否就是当前token
+     */
+    public boolean isActive(String id, long fingerprint) {
+        Long active = cache.getIfPresent(id);
+        return active != null && active == fingerprint;
+    }
+
+    /**
+     * 当前的失效版本，查询redis前取得，写入缓存时传入
+     */
+    public long version() {
+        return invalidations.get();
+    }
+
+    public void put(String id, long fingerprint, long version) {
+        cache.put(id, fingerprint);
+        //写入期间收到失效通知，删除可能已过时的值
+        if (invalidations.get() != version) {
+            cache.invalidate(id);
+        }
+    }
+
+    public void invalidate(String id) {
+        invalidations.incrementAndGet();
+        cache.invalidate(id);
+    }
+
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    /**
+     * token指纹，取签名部分（base64url）的前11个字符即64位
+     * HMAC签名本身是均匀分布的，不需要再做一次摘要
+     */
+    public static long fingerprint(String token) {
+        int start = token.lastIndexOf('.') + 1;
+        int end = Math.min(token.length(), start + 11);
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            value = (value << 6) | base64Url(token.charAt(i));
+        }
+        return value;
+    }
+
+    private static int base64Url(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A';
+        }
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 26;
+        }
+        if (c >= '0' && c <= '9') {
+            return c - '0' + 52;
+        }
+        return c == '-' ? 62 : 63;
+    }
+}
@@ -0,0 +1,103 @@
+package com.runaccepted.jwt.gateway.session;
+
+import com.runaccepted.jwt.api.session.SessionStore;
+import com.runaccepted.jwt.gateway.filter.AuthContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 批量注销的截止时间，在此之前签发的token全部失效
+ *
+ * jwt-client写入jwt.revoke.before.key并向jwt.revoke.channel发布该时间；
+ * 网关在（重新）订阅时读取一次，之后按通知更新，只保留最大的值（延迟或重复的旧通知不会降低截止时间），
+ * 请求中只比较内存中的值；
+ * 使用进程内会话存储（jwt.session.store=memory）时直接读取该存储
+ */
+@Slf4j
+@Component
+public class RevocationCutoff {
+
+    //与jwt-client校验截止时间时允许的时钟偏差一致，毫秒
+    private static final long MAX_CLOCK_SKEW = 5000;
+
+    @Value("${jwt.revoke.before.key}")
+    private String key;
+
+    @Value("${jwt.revoke.channel}")
+    private String channel;
+
+    @Autowired
+    ReactiveStringRedisTemplate redisTemplate;
+
+    //只在jwt.session.store=memory时存在
+    @Autowired(required = false)
+    SessionStore sessionStore;
+
+    //毫秒，0为没有批量注销
+    private final AtomicLong cutoff = new AtomicLong();
+
+    private Disposable subscription;
+
+    @PostConstruct
+    public void init() {
+        if (sessionStore != null) {
+            return;
+        }
+        //订阅断开期间可能丢失消息，每次（重新）订阅时重新读取
+        subscription = redisTemplate.listenToChannel(channel)
+                .doOnSubscribe(s -> reload())
+                .retryBackoff(Long.MAX_VALUE, Duration.ofSeconds(1), Duration.ofSeconds(30))
+                .subscribe(message -> update(message.getMessage()),
+                        e -> log.warn("批量注销通知订阅结束 {}", e.getLocalizedMessage()));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    /**
+     * token是否在截止时间之前签发
+     */
+    public boolean isRevoked(AuthContext context) {
+        return context.getCreated() < getCutoff();
+    }
+
+    public long getCutoff() {
+        return sessionStore == null ? cutoff.get() : sessionStore.revokedBefore();
+    }
+
+    private void reload() {
+        redisTemplate.opsForValue().get(key)
+                .subscribe(this::update, e -> log.warn("读取批量注销截止时间失败 {}", e.getLocalizedMessage()));
+    }
+
+    void update(String text) {
+        try {
+            long value = Long.parseLong(text);
+            //晚于当前时间的截止时间会拒绝之后签发的所有token，且在进程内一直保留，不使用
+            if (value > System.currentTimeMillis() + MAX_CLOCK_SKEW) {
+                log.error("批量注销截止时间晚于当前时间，忽略 {}", value);
+                return;
+            }
+            if (cutoff.accumulateAndGet(value, Math::max) == value) {
+                log.warn("批量注销 {} 之前签发的token", value);
+            } else {
+                log.debug("批量注销截止时间 {} 早于当前值，忽略", value);
+            }
+        } catch (NumberFormatException e) {
+            log.warn("批量注销截止时间格式错误 {}", text);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.runaccepted.jwt.gateway.session;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 网关本地的已登出group集合，redis判断为已登出的token记录在这里，之后直接拒绝
+ *
+ * 开放寻址（线性探测）的基本类型表，每个条目两个long，可放在堆外：
+ * group（32位十六进制，可带-）按128位读取为high、low，其他格式取字符串的两个64位哈希；
+ * 第一个long为 key1 = high ^ mix(low)，第二个long的高32位为 (low ^ mix(key1)) 的高32位，
+ * 低32位为过期时间（秒，相对创建时间）。(high, low) -> (key1, low ^ mix(key1)) 是可逆的，
+ * 表中只保留其中96位：不同的group只有在这96位全部相同时才会被误判为已登出，
+ * 随机的group查询一次的误判概率不超过 条目数 / 2^96（最多2^25条时小于2^-71），
+ * 误判的结果是未登出的token被拒绝、需要重新登录；不会把已登出的group判为未登出。
+ * 查询不分配对象、不加锁（StampedLock乐观读）；写入时复用已过期的槽，
+ * 表满且有条目已过期时在原表中压缩掉过期条目，仍然满时不再记录（redis仍会拒绝这些token）
+ */
+@Component
+public class RevokedGroupTable implements MeterBinder {
+
+    private static final long EXPIRY_MASK = 0xFFFFFFFFL;
+
+    private static final long KEY_MASK = ~EXPIRY_MASK;
+
+    //字符 -> 十六进制数值，非十六进制为-1
+    private static final byte[] HEX = new byte[128];
+
+    static {
+        Arrays.fill(HEX, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX['a' + i] = (byte) (10 + i);
+            HEX['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    //最多记录的条目数，槽数为其4/3向上取2的幂
+    @Value("${jwt.revoked.cache.size}")
+    private int maximumSize;
+
+    //是否放在堆外，不占用堆也不参与GC扫描
+    @Value("${jwt.revoked.cache.off-heap}")
+    private boolean offHeap;
+
+    private final StampedLock lock = new StampedLock();
+
+    private volatile Table table;
+
+    //过期时间的起点（秒）
+    private long base;
+
+    //表满而未能记录的次数
+    private final AtomicLong overflow = new AtomicLong();
+
+    public RevokedGroupTable() {
+    }
+
+    public RevokedGroupTable(int maximumSize, boolean offHeap) {
+        this.maximumSize = maximumSize;
+        this.offHeap = offHeap;
+        init();
+    }
+
+    @PostConstruct
+    public void init() {
+        if (maximumSize < 1 || maximumSize > 1 << 25) {
+            throw new IllegalArgumentException("条目数应在1到2^25之间: " + maximumSize);
+        }
+        base = System.currentTimeMillis() / 1000 - 1;
+        long wanted = Math.max(4, (maximumSize * 4L + 2) / 3);
+        table = new Table((int) Long.highestOneBit(wanted - 1) << 1, offHeap);
+    }
+
+    /**
+     * 记录的条目数（包括已过期但尚未复用的）和丢弃次数，由actuator注册
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("jwt.revoked.groups", this, t -> t.table.occupied).register(registry);
+        Gauge.builder("jwt.revoked.groups.capacity", this, t -> t.table.limit).register(registry);
+        FunctionCounter.builder("jwt.revoked.groups.overflow", overflow, AtomicLong::get).register(registry);
+    }
+
+    /**
+     * group是否已登出且记录尚未过期
+     */
+    public boolean contains(String group) {
+        //一次遍历读取128位：两个long作为移位寄存器，没有中间对象
+        long high = 0;
+        long low = 0;
+        int digits = 0;
+        for (int i = 0; i < group.length(); i++) {
+            char c = group.charAt(i);
+            int digit = c < 128 ? HEX[c] : -1;
+            if (digit >= 0) {
+                high = (high << 4) | (low >>> 60);
+                low = (low << 4) | digit;
+                digits++;
+            } else if (c != '-') {
+                digits = -1;
+                break;
+            }
+        }
+        if (digits != 32) {
+            high = high(group);
+            low = low(group);
+        }
+        long key1 = high ^ mix(low);
+        long key2 = (low ^ mix(key1)) & KEY_MASK;
+        long now = nowSeconds();
+
+        long stamp = lock.tryOptimisticRead();
+        boolean found = find(table, key1, key2, now);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                found = find(table, key1, key2, now);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @param expiresAt 记录的过期时间（毫秒时间戳），之后的请求重新由redis判断
+     */
+    public void add(String group, long expiresAt) {
+        long high = high(group);
+        long low = low(group);
+        long key1 = high ^ mix(low);
+        long key2 = (low ^ mix(key1)) & KEY_MASK;
+        long now = nowSeconds();
+        long expiry = Math.min(EXPIRY_MASK, (expiresAt + 999) / 1000 - base);
+        if (expiry <= now) {
+            return;
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            Table current = table;
+            if (current.occupied >= current.limit) {
+                //还没有条目过期时压缩不会释放槽，不扫描
+                if (current.earliest <= now) {
+                    compact(current, now);
+                }
+                if (current.occupied >= current.limit) {
+                    overflow.incrementAndGet();
+                    return;
+                }
+            }
+            put(current, key1, key2 | expiry, now);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private static boolean find(Table table, long key1, long key2, long now) {
+        LongBuffer slots = table.slots;
+        int mask = table.mask;
+        int index = (int) key1 & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            long stored2 = slots.get(2 * index + 1);
+            if (stored2 == 0) {
+                return false;
+            }
+            if (slots.get(2 * index) == key1 && (stored2 & KEY_MASK) == key2) {
+                return (stored2 & EXPIRY_MASK) > now;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * 已有同一group时延长过期时间，否则写入第一个已过期的槽或空槽
+     */
+    private static void put(Table table, long key1, long value2, long now) {
+        LongBuffer slots = table.slots;
+        int mask = table.mask;
+        int index = (int) key1 & mask;
+        int reusable = -1;
+        for (int probes = 0; probes <= mask; probes++) {
+            long stored2 = slots.get(2 * index + 1);
+            if (stored2 == 0) {
+                break;
+            }
+            if (slots.get(2 * index) == key1 && (stored2 & KEY_MASK) == (value2 & KEY_MASK)) {
+                if ((stored2 & EXPIRY_MASK) < (value2 & EXPIRY_MASK)) {
+                    slots.put(2 * index + 1, value2);
+                }
+                return;
+            }
+            if (reusable < 0 && (stored2 & EXPIRY_MASK) <= now) {
+                reusable = index;
+            }
+            index = (index + 1) & mask;
+        }
+        if (reusable < 0) {
+            reusable = index;
+            table.occupied++;
+        }
+        slots.put(2 * reusable, key1);
+        slots.put(2 * reusable + 1, value2);
+        table.earliest = Math.min(table.earliest, value2 & EXPIRY_MASK);
+    }
+
+    /**
+     * 在原表中删除过期条目：先清空过期的槽，再从一个空槽之后依次取出其余条目重新插入，
+     * 每个条目只会前移到探测链中更早的位置，线性探测的链保持连续；不分配新表
+     */
+    private static void compact(Table table, long now) {
+        LongBuffer slots = table.slots;
+        int mask = table.mask;
+        int start = -1;
+        for (int index = 0; index <= mask; index++) {
+            long stored2 = slots.get(2 * index + 1);
+            if (stored2 != 0 && (stored2 & EXPIRY_MASK) <= now) {
+                slots.put(2 * index, 0);
+                slots.put(2 * index + 1, 0);
+                stored2 = 0;
+            }
+            if (stored2 == 0 && start < 0) {
+                start = index;
+            }
+        }
+        //负载不超过3/4，一定有空槽
+        table.occupied = 0;
+        table.earliest = EXPIRY_MASK;
+        for (int i = 1; i <= mask + 1; i++) {
+            int index = (start + i) & mask;
+            long stored2 = slots.get(2 * index + 1);
+            if (stored2 != 0) {
+                long key1 = slots.get(2 * index);
+                slots.put(2 * index, 0);
+                slots.put(2 * index + 1, 0);
+                put(table, key1, stored2, now);
+            }
+        }
+    }
+
+    private long nowSeconds() {
+        return System.currentTimeMillis() / 1000 - base;
+    }
+
+    /**
+     * group的高64位，不是32位十六进制（可带-）时使用字符串的64位哈希
+     */
+    static long high(String group) {
+        return hex(group, 0, 0xcbf29ce484222325L);
+    }
+
+    static long low(String group) {
+        return hex(group, 16, 0x84222325cbf29ce4L);
+    }
+
+    /**
+     * 读取第skip个起的16个十六进制数字，跳过-，同时检查格式；与contains中的读取结果相同
+     */
+    private static long hex(String group, int skip, long seed) {
+        long value = 0;
+        int digits = 0;
+        for (int i = 0; i < group.length(); i++) {
+            char c = group.charAt(i);
+            int digit = c < 128 ? HEX[c] : -1;
+            if (digit >= 0) {
+                if (digits >= skip && digits < skip + 16) {
+                    value = (value << 4) | digit;
+                }
+                digits++;
+            } else if (c != '-') {
+                return hash(group, seed);
+            }
+        }
+        return digits == 32 ? value : hash(group, seed);
+    }
+
+    private static long hash(String group, long seed) {
+        long hash = seed;
+        for (int i = 0; i < group.length(); i++) {
+            hash = (hash ^ group.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    //murmur3的fmix64
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static final class Table {
+
+        //第i个条目位于2i、2i+1，第二个long为0表示空槽（有效条目的过期时间不为0）
+        private final LongBuffer slots;
+
+        private final int mask;
+
+        //超过该值时压缩，负载不超过3/4
+        private final int limit;
+
+        //非空槽数，只在写锁中修改
+        private int occupied;
+
+        //写入过的条目中最早的过期时间（秒，延长过期时间后可能偏早），压缩时重新计算
+        private long earliest = EXPIRY_MASK;
+
+        private Table(int size, boolean offHeap) {
+            this.slots = offHeap
+                    ? ByteBuffer.allocateDirect(size * 16).order(ByteOrder.nativeOrder()).asLongBuffer()
+                    : LongBuffer.wrap(new long[size * 2]);
+            this.mask = size - 1;
+            this.limit = size / 4 * 3;
+        }
+    }
+}
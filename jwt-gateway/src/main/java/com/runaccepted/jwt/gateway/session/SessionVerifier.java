@@ -0,0 +1,135 @@
+package com.runaccepted.jwt.gateway.session;
+
+import com.runaccepted.jwt.api.session.SessionStore;
+import com.runaccepted.jwt.gateway.filter.AuthContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * token在redis中的状态判断
+ *
+ * token版本、黑名单和活跃token通过一个lua脚本一次往返原子完成，
+ * 启动时预先加载脚本，请求时使用EVALSHA；
+ * jwt.session.store=memory时由进程内存储判断，返回值与脚本相同
+ */
+@Slf4j
+@Component
+public class SessionVerifier {
+
+    //放行
+    public static final long ALLOW = 0;
+    //已加入黑名单 - 已登出
+    public static final long LOGGED_OUT = 1;
+    //redis中活跃token不存在或不匹配
+    public static final long MISMATCH = 2;
+    //新的会话key不存在，迁移期间需要再读取旧的JWT_TOKEN hash
+    private static final long NOT_FOUND = 3;
+
+    @Value("${jwt.blacklist.format}")
+    private String jwtBlacklist;
+
+    @Value("${jwt.session.format}")
+    private String jwtSession;
+
+    @Value("${jwt.version.format}")
+    private String jwtVersion;
+
+    @Value("${jwt.token.format}")
+    private String jwtToken;
+
+    @Value("${jwt.token.legacy}")
+    private boolean jwtTokenLegacy;
+
+    @Autowired
+    ReactiveStringRedisTemplate redisTemplate;
+
+    @Autowired
+    ActiveSessionCache activeSessionCache;
+
+    @Autowired
+    RevokedGroupTable revokedGroups;
+
+    //只在jwt.session.store=memory时存在
+    @Autowired(required = false)
+    SessionStore sessionStore;
+
+    private DefaultRedisScript<Long> authCheckScript;
+
+    @PostConstruct
+    public void init() {
+        authCheckScript = new DefaultRedisScript<>();
+        authCheckScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/auth_check.lua")));
+        authCheckScript.setResultType(Long.class);
+        if (sessionStore != null) {
+            return;
+        }
+
+        //预加载脚本，redis不可用时不影响启动，执行时会回退到EVAL
+        ByteBuffer script = ByteBuffer.wrap(authCheckScript.getScriptAsString().getBytes(StandardCharsets.UTF_8));
+        redisTemplate.execute(connection -> connection.scriptingCommands().scriptLoad(script))
+                .subscribe(sha -> log.info("auth_check.lua 已加载 sha:{}", sha),
+                        e -> log.warn("auth_check.lua 预加载失败 {}", e.getLocalizedMessage()));
+    }
+
+    /**
+     * 判断token是否已登出、是否是当前活跃的token
+     *
+     * 本地缓存命中且指纹一致时不再访问redis，
+     * 被加入黑名单的token不会是活跃token，所以命中时无需再查黑名单；
+     * redis判断为已登出的token记录其group，免登录截止时间之前再次出现时直接拒绝
+     */
+    public Mono<Long> verify(AuthContext context) {
+        String id = context.getId();
+        if (sessionStore != null) {
+            return Mono.just(sessionStore.check(id, context.getGroup(), context.getToken(), context.getVersion()));
+        }
+        if (revokedGroups.contains(context.getGroup())) {
+            return Mono.just(LOGGED_OUT);
+        }
+        long fingerprint = ActiveSessionCache.fingerprint(context.getToken());
+        if (activeSessionCache.isActive(id, fingerprint)) {
+            return Mono.just(ALLOW);
+        }
+        long version = activeSessionCache.version();
+        String blackKey = String.format(jwtBlacklist, id, context.getGroup());
+        String sessionKey = String.format(jwtSession, id);
+        String versionKey = String.format(jwtVersion, id);
+        return redisTemplate.execute(authCheckScript,
+                Arrays.asList(blackKey, sessionKey, versionKey),
+                Arrays.asList(context.getToken(), String.valueOf(context.getVersion())))
+                .next()
+                .defaultIfEmpty(MISMATCH)
+                .flatMap(status -> status == NOT_FOUND ? verifyLegacy(context) : Mono.just(status))
+                .doOnNext(status -> {
+                    if (status == ALLOW) {
+                        activeSessionCache.put(id, fingerprint, version);
+                    } else if (status == LOGGED_OUT) {
+                        revokedGroups.add(context.getGroup(), context.getHoldTime());
+                    }
+                });
+    }
+
+    /**
+     * 迁移期间，新的会话key不存在时读取旧的JWT_TOKEN hash
+     */
+    private Mono<Long> verifyLegacy(AuthContext context) {
+        if (!jwtTokenLegacy) {
+            return Mono.just(MISMATCH);
+        }
+        return redisTemplate.<String, String>opsForHash().get(jwtToken, context.getId())
+                .map(token -> token.equals(context.getToken()) ? ALLOW : MISMATCH)
+                .defaultIfEmpty(MISMATCH);
+    }
+}
@@ -1,14 +1,30 @@
 package com.runaccepted.jwt.gateway.utils;
 
-import com.runaccepted.jwt.api.constant.JwtConstant;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.runaccepted.jwt.api.codec.GroupIds;
+import com.runaccepted.jwt.api.codec.JwtCodec;
+import com.runaccepted.jwt.api.codec.JwtCodecException;
+import com.runaccepted.jwt.api.codec.JwtPayload;
+import com.runaccepted.jwt.api.codec.KeyRing;
+import com.runaccepted.jwt.api.codec.KeyRingProperties;
 import com.runaccepted.jwt.api.entity.Admin;
-import io.jsonwebtoken.*;
+import com.runaccepted.jwt.gateway.filter.AuthContext;
+import io.jsonwebtoken.impl.TextCodec;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 
-import java.text.SimpleDateFormat;
+import javax.annotation.PostConstruct;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
  * JwtToken生成的工具类
@@ -41,55 +57,132 @@ public class JwtUtils {
 	@Value("${jwt.hold.type}")
 	private int holdType;
 
+	//过期前多少毫秒内重新签发token
+	@Value("${jwt.refresh.window}")
+	private long refreshWindow;
+
+	//新token过期时间的随机抖动，毫秒
+	@Value("${jwt.refresh.jitter}")
+	private long refreshJitter;
+
+	//同一token重新签发的结果保留时间，毫秒
+	@Value("${jwt.refresh.share}")
+	private long refreshShare;
+
+	@Autowired
+	VerifiedTokenCache verifiedTokenCache;
+
+	//原token的group -> 重新签发的token
+	private Cache<String, String> refreshedTokens;
+
+	//签发紧凑格式的token（短载荷名、秒、16字节group），两种格式都可以解析
+	@Value("${jwt.token.compact}")
+	private boolean compact;
+
+	@Autowired
+	Environment environment;
+
+	private JwtCodec codec;
+
+	@PostConstruct
+	public void init() {
+		codec = new JwtCodec(loadKeyRing());
+		codec.setCompact(compact);
+		refreshedTokens = Caffeine.newBuilder()
+				.maximumSize(100_000)
+				.expireAfterWrite(refreshShare, TimeUnit.MILLISECONDS)
+				.build();
+	}
+
 	/**
-	 * 根据用户信息生成token
+	 * 配置刷新后重新加载密钥环、切换token格式，不需要重启
+	 * 新配置有误时保留原密钥环；密钥环更新后清空已验签token的缓存
 	 */
-	public String generateToken(Admin admin) {
-		Map<String, Object> claims = new HashMap<String, Object>();
-		claims.put(JwtConstant.CLAIM_KEY_USERID, admin.getId());
-		claims.put(JwtConstant.CLAIM_KEY_USERNAME, admin.getUsername());
-		claims.put(JwtConstant.CLAIM_KEY_CREATED, new Date());
-		claims.put(JwtConstant.CLAIM_KEY_HOLDTIME,generateLoginDate());
-		claims.put(JwtConstant.CLAIM_KEY_GROUP,generateGroup());
-		return generateToken(claims);
+	@EventListener
+	public void onEnvironmentChange(EnvironmentChangeEvent event) {
+		if (event.getKeys().contains("jwt.token.compact")) {
+			codec.setCompact(environment.getProperty("jwt.token.compact", Boolean.class, false));
+			log.info("签发紧凑格式token:{}", codec.isCompact());
+		}
+		boolean changed = event.getKeys().stream()
+				.anyMatch(key -> key.startsWith("jwt.keyring") || key.equals("jwt.secret.key"));
+		if (!changed) {
+			return;
+		}
+		try {
+			codec.setKeyRing(loadKeyRing());
+			//缓存中的token不再验签，密钥被移除后需要清空，之后按新的密钥环重新验签
+			verifiedTokenCache.invalidateAll();
+			refreshedTokens.invalidateAll();
+			log.info("密钥环已更新 签发使用kid:{}", codec.getKeyRing().active().getKid());
+		} catch (IllegalArgumentException e) {
+			log.error("密钥环配置错误，继续使用原密钥环 {}", e.getLocalizedMessage());
+		}
 	}
 
 	/**
-	 * 根据负责生成JWT的token
+	 * jwt.keyring.* 配置的密钥，以及jwt.secret.key对应的没有kid的HS512/HS256密钥
 	 */
-	private String generateToken(Map<String, Object> claims) {
-		return Jwts.builder()
-				.setSubject(SUBJECT)
-				.setClaims(claims)
-				.setExpiration(generateExpirationDate())
-				.signWith(SignatureAlgorithm.HS512, APPSECRET)
-				.compact();
+	private KeyRing loadKeyRing() {
+		KeyRingProperties properties = Binder.get(environment)
+				.bind("jwt.keyring", KeyRingProperties.class)
+				.orElseGet(KeyRingProperties::new);
+		//与jjwt的signWith(SignatureAlgorithm, String)相同，密钥按base64解码，只解码一次
+		byte[] secret = TextCodec.BASE64.decode(environment.getProperty("jwt.secret.key", APPSECRET));
+		return KeyRing.load(properties, secret);
+	}
+
+	/**
+	 * 根据用户信息生成token
+	 */
+	public String generateToken(Admin admin) {
+		return codec.encode(new JwtPayload(admin.getId(), admin.getUsername(), generateGroup(),
+				System.currentTimeMillis(), generateLoginDate().getTime(), generateExpirationDate().getTime()));
 	}
 
 	/**
 	 * 从token中获取JWT中的负载
+	 * 已过期的token同样返回负载，由调用方判断有效期
 	 */
-	public Claims getClaimsFromToken(String token) {
-		Claims claims = null;
+	public JwtPayload getPayloadFromToken(String token) {
+		JwtPayload payload = null;
 		try {
-			claims = Jwts.parser()
-					.setSigningKey(APPSECRET)
-					.parseClaimsJws(token)
-					.getBody();
-		}catch (ExpiredJwtException e) {
-			String id = (String) e.getClaims().get(JwtConstant.CLAIM_KEY_USERID);
-			String username = (String) e.getClaims().get(JwtConstant.CLAIM_KEY_USERNAME);
-			log.error("JWT载荷中 用户ID:{} 用户名:{}", id, username);
-
-			claims=e.getClaims();
-		} catch (MalformedJwtException e){
-			log.error("Json格式错误 {}",e.getLocalizedMessage());
-		} catch (SignatureException e){
-			log.error("Json格式错误 {}",e.getLocalizedMessage());
-		} catch(IllegalArgumentException e){
-			log.error("错误 {}",e.getLocalizedMessage());
+			payload = codec.decode(token);
+		} catch (JwtCodecException e){
+			//不合法的token由调用方记录，这里只在调试时输出
+			log.debug("Json格式错误 {}",e.getLocalizedMessage());
 		}
-		return claims;
+		return payload;
+	}
+
+	/**
+	 * 解析并验证token一次，得到本次请求使用的token信息
+	 * 已验签的token从缓存中取得，token不合法时返回null
+	 */
+	public AuthContext getAuthContext(String token) {
+		ByteBuffer digest = verifiedTokenCache.digest(token);
+		AuthContext context = verifiedTokenCache.get(digest);
+		if (context == null) {
+			KeyRing keyRing = codec.getKeyRing();
+			context = parseAuthContext(token);
+			if (context != null) {
+				verifiedTokenCache.put(digest, context);
+				//验签期间密钥环被替换时删除刚写入的条目，避免清空缓存后留下按旧密钥环验签的结果
+				if (codec.getKeyRing() != keyRing) {
+					verifiedTokenCache.invalidate(digest);
+				}
+			}
+		}
+		return context;
+	}
+
+	private AuthContext parseAuthContext(String token) {
+		JwtPayload payload = getPayloadFromToken(token);
+		if (payload == null) {
+			return null;
+		}
+		return new AuthContext(token, payload.getId(), payload.getUsername(), payload.getGroup(),
+				payload.getCreated(), payload.getHoldTime(), payload.getExpiration(), payload.getVersion());
 	}
 
 	/**
@@ -117,10 +210,8 @@ public class JwtUtils {
 	 */
 	public String generateGroup() {
 
-		String group = UUID.randomUUID().toString();
-		group = group.replace(".","");
-
-		return group;
+		//按签发时间排序，高48位为毫秒时间戳
+		return GroupIds.next();
 	}
 
 	/**
@@ -128,8 +219,7 @@ public class JwtUtils {
 	 */
 	public String getUserNameFromToken(String token) {
 
-		Claims claims = getClaimsFromToken(token);
-		String username = (String) claims.get(JwtConstant.CLAIM_KEY_USERNAME);
+		String username = getPayloadFromToken(token).getUsername();
 
 		return username;
 	}
@@ -138,9 +228,8 @@ public class JwtUtils {
 	 * 从token中获取过期时间
 	 */
 	public Date getExpiredDateFromToken(String token) {
-		Claims claims = getClaimsFromToken(token);
-		Date expiredDate = claims.getExpiration();
-		log.error("token中过期时间 {}", new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(expiredDate));
+		Date expiredDate = new Date(getPayloadFromToken(token).getExpiration());
+		log.debug("token中过期时间 {}", expiredDate);
 		return expiredDate;
 	}
 
@@ -148,9 +237,8 @@ public class JwtUtils {
 	 * 从token中获取group
 	 */
 	public String getGroupFromToken(String token) {
-		Claims claims = getClaimsFromToken(token);
-		String group = (String)claims.get(JwtConstant.CLAIM_KEY_GROUP);
-		log.error("token中的用户组 {}", group);
+		String group = getPayloadFromToken(token).getGroup();
+		log.debug("token中的用户组 {}", group);
 		return group;
 	}
 
@@ -158,8 +246,7 @@ public class JwtUtils {
 	 * 从token中获取登录用户名id
 	 */
 	public String getUserIdFromToken(String token) {
-		Claims claims = getClaimsFromToken(token);
-		String id = (String) claims.get(JwtConstant.CLAIM_KEY_USERID);
+		String id = getPayloadFromToken(token).getId();
 		return id;
 	}
 
@@ -167,11 +254,9 @@ public class JwtUtils {
 	 * 从token中获取登录截止时间
 	 */
 	public Date getHoldTime(String token){
-		Claims claims = getClaimsFromToken(token);
-		long dateTime = (long)claims.get(JwtConstant.CLAIM_KEY_HOLDTIME);
+		long dateTime = getPayloadFromToken(token).getHoldTime();
 		Date date = new Date(dateTime);
-		log.info("原数据值：{} 该token免登录时间截止至 {}",dateTime,
-				new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(date));
+		log.debug("原数据值：{} 该token免登录时间截止至 {}",dateTime,date);
 		return date;
 	}
 
@@ -210,6 +295,13 @@ public class JwtUtils {
 		Date date = getHoldTime(token);
 		return new Date().before(date);
 	}
+	/**
+	 * 免登录截止时间判断
+	 */
+	public boolean isHoldTime(AuthContext context){
+		return System.currentTimeMillis() < context.getHoldTime();
+	}
+
 	/**
 	 * 判断token是否可以被刷新
 	 */
@@ -217,16 +309,33 @@ public class JwtUtils {
 		return !isTokenExpired(token);
 	}
 
+	/**
+	 * 判断token是否可以被刷新，距离过期时间在刷新窗口内（或已过期）才重新签发
+	 */
+	public boolean canRefresh(AuthContext context) {
+		return System.currentTimeMillis() >= context.getExpiration() - refreshWindow;
+	}
+
 
 	/**
 	 * 刷新token
 	 */
 	public String refreshToken(String token) {
-		Claims claims = getClaimsFromToken(token);
-		claims.put(JwtConstant.CLAIM_KEY_CREATED, new Date());
-		claims.put(JwtConstant.CLAIM_KEY_GROUP,generateGroup());
-		//网关仅更新token有效期，不更新免登录时间
-		//claims.put(JwtConstant.CLAIM_KEY_HOLDTIME,generateLoginDate());
-		return generateToken(claims);
+		return refreshToken(getAuthContext(token));
+	}
+
+	/**
+	 * 刷新token，使用已验证的token信息，不再重复解析
+	 */
+	public String refreshToken(AuthContext context) {
+		//携带同一token的并发请求共用一次签发的结果
+		return refreshedTokens.get(context.getGroup(), group -> {
+			//过期时间加上随机抖动，避免同时签发的token同时过期
+			long expiration = generateExpirationDate().getTime()
+					+ (refreshJitter > 0 ? ThreadLocalRandom.current().nextLong(refreshJitter) : 0);
+			//网关仅更新token有效期，不更新免登录时间
+			return codec.encode(new JwtPayload(context.getId(), context.getUsername(), generateGroup(),
+					System.currentTimeMillis(), context.getHoldTime(), expiration, context.getVersion()));
+		});
 	}
 }
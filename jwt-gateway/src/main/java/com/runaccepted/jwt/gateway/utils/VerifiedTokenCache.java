@@ -0,0 +1,121 @@
+package com.runaccepted.jwt.gateway.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.runaccepted.jwt.gateway.filter.AuthContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已验签token的缓存 token摘要(SHA-256) -> 不可变的token信息
+ *
+ * 同一个token在有效期内会被重复发送，命中时跳过HS512验签和json解析；
+ * 条目在token的过期时间和免登录截止时间中较早的一个到达时失效
+ */
+@Component
+public class VerifiedTokenCache implements MeterBinder {
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    @Value("${jwt.verified.cache.size}")
+    private long maximumSize;
+
+    private Cache<ByteBuffer, AuthContext> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<ByteBuffer, AuthContext>() {
+                    @Override
+                    public long expireAfterCreate(ByteBuffer key, AuthContext value, long currentTime) {
+                        return remainingNanos(value);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(ByteBuffer key, AuthContext value, long currentTime, long currentDuration) {
+                        return remainingNanos(value);
+                    }
+
+                    @Override
+                    public long expireAfterRead(ByteBuffer key, AuthContext value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 命中率、淘汰次数等，由actuator注册
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "jwt.verified.tokens");
+    }
+
+    /**
+     * token摘要，作为缓存的key
+     */
+    public ByteBuffer digest(String token) {
+        return ByteBuffer.wrap(SHA256.get().digest(token.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    public AuthContext get(ByteBuffer digest) {
+        return cache.getIfPresent(digest);
+    }
+
+    /**
+     * 已过期或已过免登录时间的token不缓存
+     */
+    public void put(ByteBuffer digest, AuthContext context) {
+        if (remainingNanos(context) > 0) {
+            cache.put(digest, context);
+        }
+    }
+
+    public void invalidate(ByteBuffer digest) {
+        cache.invalidate(digest);
+    }
+
+    /**
+     * 清空缓存，密钥环更新后调用，被移除的密钥签发的token重新验签时被拒绝
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * 命中/未命中次数，用于评估缓存大小
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private static long remainingNanos(AuthContext context) {
+        long deadline = Math.min(context.getExpiration(), context.getHoldTime());
+        return TimeUnit.MILLISECONDS.toNanos(deadline - System.currentTimeMillis());
+    }
+}
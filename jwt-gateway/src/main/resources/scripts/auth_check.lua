@@ -0,0 +1,23 @@
+-- 网关token状态检查，一次往返完成token版本、黑名单和活跃token的判断
+-- 所有key使用相同的hash tag {用户id}，在redis cluster中位于同一个slot
+-- KEYS[1] 黑名单 JWT_BLACKLIST::{id}:<group>
+-- KEYS[2] 活跃token JWT_SESSION::{id}
+-- KEYS[3] token版本 JWT_VERSION::{id}
+-- ARGV[1] 请求中的token
+-- ARGV[2] token中的版本
+-- 返回 0:放行 1:已登出 2:信息不匹配 3:活跃token不存在
+local version = tonumber(redis.call('GET', KEYS[3]) or '0')
+if tonumber(ARGV[2]) < version then
+    return 1
+end
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    return 1
+end
+local active = redis.call('GET', KEYS[2])
+if not active then
+    return 3
+end
+if active ~= ARGV[1] then
+    return 2
+end
+return 0
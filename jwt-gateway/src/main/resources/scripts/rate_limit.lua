@@ -0,0 +1,18 @@
+-- 网关集群范围的滑动窗口限流，判断和计数一次往返完成
+-- 两个key使用相同的hash tag {限流key}，在redis cluster中位于同一个slot
+-- KEYS[1] 当前窗口的计数 JWT_RATE::{key}:<窗口序号>
+-- KEYS[2] 上一个窗口的计数
+-- ARGV[1] 每个窗口允许的请求数
+-- ARGV[2] 窗口长度（毫秒）
+-- ARGV[3] 当前窗口已经过的毫秒数
+-- 返回 1:放行并计数 0:超过上限，不计数
+local window = tonumber(ARGV[2])
+local previous = tonumber(redis.call('GET', KEYS[2]) or '0')
+local current = tonumber(redis.call('GET', KEYS[1]) or '0')
+local estimated = previous * (window - tonumber(ARGV[3])) / window + current
+if estimated >= tonumber(ARGV[1]) then
+    return 0
+end
+redis.call('INCR', KEYS[1])
+redis.call('PEXPIRE', KEYS[1], window * 2)
+return 1
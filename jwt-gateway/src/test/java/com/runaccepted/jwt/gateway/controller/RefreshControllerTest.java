@@ -0,0 +1,108 @@
+package com.runaccepted.jwt.gateway.controller;
+
+import com.runaccepted.jwt.api.entity.Admin;
+import com.runaccepted.jwt.gateway.filter.AuthFilter;
+import com.runaccepted.jwt.gateway.route.RouteMatcher;
+import com.runaccepted.jwt.gateway.route.RoutePolicy;
+import com.runaccepted.jwt.gateway.utils.JwtUtils;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 修改外部配置文件后调用刷新接口，不重启上下文更换签发密钥和放行路由
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        //命令行参数，刷新时按它重新读取配置文件
+        args = "--spring.config.additional-location=file:target/refresh-test/gateway.properties",
+        properties = {
+                "spring.cloud.nacos.discovery.enabled=false",
+                "jwt.admin.key=" + RefreshControllerTest.ADMIN_KEY,
+                "jwt.event.file=target/refresh-test/gateway-events.log"})
+@ActiveProfiles("memory")
+class RefreshControllerTest {
+
+    static final String ADMIN_KEY = "test-admin-key";
+
+    private static final Path CONFIG = Paths.get("target/refresh-test/gateway.properties");
+
+    @Autowired
+    WebTestClient webClient;
+
+    @Autowired
+    JwtUtils jwtUtils;
+
+    @Autowired
+    AuthFilter authFilter;
+
+    @BeforeAll
+    static void writeInitialConfig() throws IOException {
+        writeConfig("k1", "first-secret-0123456789abcdef0123", "/jwt-client/login");
+    }
+
+    private static void writeConfig(String kid, String secret, String skipUris) throws IOException {
+        Files.createDirectories(CONFIG.getParent());
+        Files.write(CONFIG, Arrays.asList(
+                "jwt.keyring.legacy-enabled=false",
+                "jwt.keyring.active=" + kid,
+                "jwt.keyring.keys[0].kid=" + kid,
+                "jwt.keyring.keys[0].alg=HS256",
+                "jwt.keyring.keys[0].secret=" + Base64.getEncoder().encodeToString(secret.getBytes(StandardCharsets.UTF_8)),
+                "auth.skip.uris=" + skipUris), StandardCharsets.UTF_8);
+    }
+
+    private static Admin admin() {
+        Admin admin = new Admin();
+        admin.setId("1");
+        admin.setUsername("admin");
+        return admin;
+    }
+
+    @SuppressWarnings("unchecked")
+    private RoutePolicy policy(String path) {
+        return ((RouteMatcher<RoutePolicy>) ReflectionTestUtils.getField(authFilter, "routes")).match(path);
+    }
+
+    @Test
+    void refreshRotatesKeyAndRoutesWithoutRestart() throws IOException {
+        String oldToken = jwtUtils.generateToken(admin());
+        assertNotNull(jwtUtils.getAuthContext(oldToken));
+        assertEquals(RoutePolicy.FULL, policy("/jwt-client/captcha"));
+
+        writeConfig("k2", "second-secret-0123456789abcdef012", "/jwt-client/login,/jwt-client/captcha");
+
+        webClient.post().uri("/jwt-gateway/admin/refresh")
+                .exchange()
+                .expectStatus().isForbidden();
+        assertNotNull(jwtUtils.getAuthContext(oldToken));
+
+        webClient.post().uri("/jwt-gateway/admin/refresh")
+                .header(RefreshController.ADMIN_KEY_HEADER, ADMIN_KEY)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(keys -> assertTrue(keys.contains("jwt.keyring.active"), keys));
+
+        //k1已移除，缓存中的token同样被拒绝
+        assertNull(jwtUtils.getAuthContext(oldToken));
+        assertEquals("admin", jwtUtils.getAuthContext(jwtUtils.generateToken(admin())).getUsername());
+        assertEquals(RoutePolicy.SKIP, policy("/jwt-client/captcha"));
+    }
+}
@@ -0,0 +1,130 @@
+package com.runaccepted.jwt.gateway.filter;
+
+import com.runaccepted.jwt.api.event.AuthEventLog;
+import com.runaccepted.jwt.gateway.metrics.AuthMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 登录路由的限流：超长请求体返回413，按用户名的令牌桶对不同ip共同生效
+ */
+class RateLimitFilterTest {
+
+    private static final String LOGIN = "/jwt-client/login";
+
+    private RateLimitFilter filter;
+
+    private AuthEventLog authEventLog;
+
+    //通过限流交给下游的请求
+    private final List<ServerWebExchange> forwarded = new ArrayList<>();
+
+    private final GatewayFilterChain chain = exchange -> {
+        forwarded.add(exchange);
+        return exchange.getResponse().setComplete();
+    };
+
+    @BeforeEach
+    void setUp(@TempDir Path dir) {
+        AuthMetrics authMetrics = new AuthMetrics();
+        ReflectionTestUtils.setField(authMetrics, "meterRegistry", new SimpleMeterRegistry());
+        authMetrics.init();
+        authEventLog = new AuthEventLog(dir.resolve("events.log"), 1024, 1);
+
+        filter = new RateLimitFilter();
+        filter.setIpRate(1000);
+        filter.setIpBurst(1000);
+        ReflectionTestUtils.setField(filter, "authMetrics", authMetrics);
+        ReflectionTestUtils.setField(filter, "authEventLog", authEventLog);
+        filter.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        authEventLog.close();
+    }
+
+    private static String credentials(String username, int padding) {
+        StringBuilder pad = new StringBuilder();
+        for (int i = 0; i < padding; i++) {
+            pad.append('x');
+        }
+        return "{\"username\":\"" + username + "\",\"password\":\"wrong\",\"pad\":\"" + pad + "\"}";
+    }
+
+    private MockServerWebExchange login(String body, String ip, boolean contentLength) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        MockServerHttpRequest.BodyBuilder request = MockServerHttpRequest.post(LOGIN)
+                .remoteAddress(new InetSocketAddress(ip, 40000));
+        if (contentLength) {
+            request.contentLength(bytes.length);
+        }
+        MockServerWebExchange exchange = MockServerWebExchange.from(request.body(body));
+        filter.filter(exchange, chain).block();
+        return exchange;
+    }
+
+    @Test
+    void paddedLoginIsRejectedWithoutReadingBody() {
+        MockServerWebExchange exchange = login(credentials("admin", 8000), "10.0.0.1", true);
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, exchange.getResponse().getStatusCode());
+        assertTrue(forwarded.isEmpty());
+    }
+
+    @Test
+    void paddedChunkedLoginIsRejected() {
+        MockServerWebExchange exchange = login(credentials("admin", 8000), "10.0.0.1", false);
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, exchange.getResponse().getStatusCode());
+        assertTrue(forwarded.isEmpty());
+    }
+
+    @Test
+    void usernameBucketIsSharedAcrossIps() {
+        //每个ip只请求一次，第userBurst+1次起按用户名拒绝
+        for (int i = 0; i < filter.getUserBurst(); i++) {
+            MockServerWebExchange exchange = login(credentials("admin", 100), "10.0.1." + i, true);
+            assertNull(exchange.getResponse().getStatusCode());
+        }
+        MockServerWebExchange exchange = login(credentials("admin", 100), "10.0.2.1", true);
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, exchange.getResponse().getStatusCode());
+        assertEquals(filter.getUserBurst(), forwarded.size());
+
+        //其他用户名不受影响
+        assertNull(login(credentials("other", 100), "10.0.2.1", true).getResponse().getStatusCode());
+    }
+
+    @Test
+    void forwardsCachedBody() {
+        String body = credentials("admin", 100);
+        login(body, "10.0.0.1", false);
+        assertEquals(1, forwarded.size());
+        String downstream = DataBufferUtils.join(forwarded.get(0).getRequest().getBody())
+                .map(buffer -> {
+                    String text = buffer.toString(StandardCharsets.UTF_8);
+                    DataBufferUtils.release(buffer);
+                    return text;
+                })
+                .block();
+        assertEquals(body, downstream);
+    }
+}
@@ -0,0 +1,36 @@
+package com.runaccepted.jwt.gateway.session;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 批量注销通知乱序、重复到达时截止时间只增不减
+ */
+class RevocationCutoffTest {
+
+    @Test
+    void keepsLatestCutoffWhenMessagesArriveOutOfOrder() {
+        RevocationCutoff cutoff = new RevocationCutoff();
+        long now = System.currentTimeMillis();
+
+        cutoff.update(String.valueOf(now - 1000));
+        assertEquals(now - 1000, cutoff.getCutoff());
+        cutoff.update(String.valueOf(now));
+        //延迟到达的旧通知
+        cutoff.update(String.valueOf(now - 1000));
+        //重新订阅时读取到的旧值
+        cutoff.update(String.valueOf(now - 60_000));
+        assertEquals(now, cutoff.getCutoff());
+    }
+
+    @Test
+    void ignoresInvalidAndFutureCutoffs() {
+        RevocationCutoff cutoff = new RevocationCutoff();
+        long now = System.currentTimeMillis();
+        cutoff.update(String.valueOf(now - 1000));
+        cutoff.update("not-a-number");
+        cutoff.update(String.valueOf(now + 3_600_000));
+        assertEquals(now - 1000, cutoff.getCutoff());
+    }
+}
@@ -0,0 +1,63 @@
+package com.runaccepted.jwt.gateway.session;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 表满时只在有条目过期后压缩，压缩在原表中完成且不丢失未过期的条目
+ */
+class RevokedGroupTableTest {
+
+    private static String group(int i) {
+        return String.format("%016x%016x", i * 0x9E3779B97F4A7C15L, (long) i);
+    }
+
+    private static long overflow(RevokedGroupTable table) {
+        return ((AtomicLong) ReflectionTestUtils.getField(table, "overflow")).get();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void compactsInPlaceOnlyAfterExpiry(boolean offHeap) throws InterruptedException {
+        RevokedGroupTable table = new RevokedGroupTable(96, offHeap);
+        Object slots = ReflectionTestUtils.getField(ReflectionTestUtils.getField(table, "table"), "slots");
+        long now = System.currentTimeMillis();
+        //128个槽，最多96个条目：一半很快过期，一半一小时后过期
+        for (int i = 0; i < 96; i++) {
+            table.add(group(i), i % 2 == 0 ? now + 1000 : now + 3_600_000);
+        }
+        for (int i = 0; i < 96; i++) {
+            assertTrue(table.contains(group(i)));
+        }
+
+        //都未过期时丢弃新条目
+        table.add(group(1000), now + 3_600_000);
+        assertFalse(table.contains(group(1000)));
+        assertEquals(1, overflow(table));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (table.contains(group(0)) && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        for (int i = 0; i < 48; i++) {
+            table.add(group(1000 + i), now + 3_600_000);
+        }
+        assertEquals(1, overflow(table));
+        for (int i = 0; i < 96; i++) {
+            assertEquals(i % 2 != 0, table.contains(group(i)), "group " + i);
+        }
+        for (int i = 0; i < 48; i++) {
+            assertTrue(table.contains(group(1000 + i)));
+        }
+        //复用原来的缓冲区
+        assertTrue(slots == ReflectionTestUtils.getField(ReflectionTestUtils.getField(table, "table"), "slots"));
+    }
+}
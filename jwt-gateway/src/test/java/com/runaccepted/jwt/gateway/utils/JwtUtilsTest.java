@@ -0,0 +1,91 @@
+package com.runaccepted.jwt.gateway.utils;
+
+import com.runaccepted.jwt.api.entity.Admin;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 密钥环热更新：被移除的kid签发的token即使已在验签缓存中也被拒绝
+ */
+class JwtUtilsTest {
+
+    private MockEnvironment environment;
+
+    private JwtUtils jwtUtils;
+
+    @BeforeEach
+    void setUp() {
+        environment = new MockEnvironment()
+                .withProperty("jwt.secret.key", "online-runaccepted")
+                .withProperty("jwt.keyring.legacy-enabled", "false");
+        useKey("k1", "first-secret-0123456789abcdef0123");
+
+        VerifiedTokenCache verifiedTokenCache = new VerifiedTokenCache();
+        ReflectionTestUtils.setField(verifiedTokenCache, "maximumSize", 1000L);
+        verifiedTokenCache.init();
+
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "APPSECRET", "online-runaccepted");
+        ReflectionTestUtils.setField(jwtUtils, "EXPIRE", 120000L);
+        ReflectionTestUtils.setField(jwtUtils, "holdType", 12);
+        ReflectionTestUtils.setField(jwtUtils, "holdTime", 10);
+        ReflectionTestUtils.setField(jwtUtils, "refreshWindow", 30000L);
+        ReflectionTestUtils.setField(jwtUtils, "refreshJitter", 0L);
+        ReflectionTestUtils.setField(jwtUtils, "refreshShare", 5000L);
+        ReflectionTestUtils.setField(jwtUtils, "verifiedTokenCache", verifiedTokenCache);
+        ReflectionTestUtils.setField(jwtUtils, "environment", environment);
+        jwtUtils.init();
+    }
+
+    private void useKey(String kid, String secret) {
+        environment.setProperty("jwt.keyring.active", kid);
+        environment.setProperty("jwt.keyring.keys[0].kid", kid);
+        environment.setProperty("jwt.keyring.keys[0].alg", "HS256");
+        environment.setProperty("jwt.keyring.keys[0].secret",
+                Base64.getEncoder().encodeToString(secret.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static Admin admin() {
+        Admin admin = new Admin();
+        admin.setId("1");
+        admin.setUsername("admin");
+        return admin;
+    }
+
+    @Test
+    void rotatedOutKidIsRejectedEvenWhenCached() {
+        String oldToken = jwtUtils.generateToken(admin());
+        //第一次验签后写入缓存，第二次从缓存命中
+        assertNotNull(jwtUtils.getAuthContext(oldToken));
+        assertNotNull(jwtUtils.getAuthContext(oldToken));
+
+        useKey("k2", "second-secret-0123456789abcdef012");
+        jwtUtils.onEnvironmentChange(new EnvironmentChangeEvent(Collections.singleton("jwt.keyring.active")));
+
+        assertNull(jwtUtils.getAuthContext(oldToken));
+        String newToken = jwtUtils.generateToken(admin());
+        assertEquals("admin", jwtUtils.getAuthContext(newToken).getUsername());
+    }
+
+    @Test
+    void invalidKeyRingKeepsCurrentKeysAndCache() {
+        String token = jwtUtils.generateToken(admin());
+        assertNotNull(jwtUtils.getAuthContext(token));
+
+        environment.setProperty("jwt.keyring.active", "missing");
+        jwtUtils.onEnvironmentChange(new EnvironmentChangeEvent(Collections.singleton("jwt.keyring.active")));
+
+        assertNotNull(jwtUtils.getAuthContext(token));
+    }
+}
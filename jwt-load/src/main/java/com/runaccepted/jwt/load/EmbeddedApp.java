@@ -0,0 +1,86 @@
+package com.runaccepted.jwt.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 在当前进程中启动一个spring boot的可执行jar
+ *
+ * 每个jar使用独立的类加载器（父加载器为平台类加载器），网关（webflux）和客户端（servlet）
+ * 的依赖、配置文件互不影响；由jar中的JarLauncher启动，与 java -jar 相同
+ */
+class EmbeddedApp {
+
+    private final String name;
+
+    private final Path jar;
+
+    private final int port;
+
+    EmbeddedApp(String name, Path jar, int port) {
+        this.name = name;
+        this.jar = jar;
+        this.port = port;
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    /**
+     * 启动并等待 /actuator/health 返回200
+     */
+    void start(List<String> args, long timeoutMillis) throws Exception {
+        URLClassLoader loader = new URLClassLoader(new URL[]{jar.toUri().toURL()},
+                ClassLoader.getSystemClassLoader().getParent());
+        Thread main = new Thread(() -> {
+            try {
+                Class<?> launcher = loader.loadClass("org.springframework.boot.loader.JarLauncher");
+                launcher.getMethod("main", String[].class).invoke(null, (Object) args.toArray(new String[0]));
+            } catch (Throwable e) {
+                System.err.println(name + " 启动失败 " + e);
+            }
+        }, name + "-main");
+        main.setContextClassLoader(loader);
+        main.start();
+
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (System.currentTimeMillis() < deadline) {
+            if (healthy()) {
+                return;
+            }
+            if (!main.isAlive()) {
+                //main已返回，应用已启动完成或启动失败
+                if (healthy()) {
+                    return;
+                }
+                break;
+            }
+            Thread.sleep(200);
+        }
+        throw new IllegalStateException(name + " 未能在" + timeoutMillis + "ms内启动，端口 " + port);
+    }
+
+    private boolean healthy() {
+        try {
+            HttpURLConnection connection = (HttpURLConnection)
+                    new URL("http://127.0.0.1:" + port + "/actuator/health").openConnection();
+            connection.setConnectTimeout(200);
+            connection.setReadTimeout(1000);
+            int status = connection.getResponseCode();
+            try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                while (in != null && in.read() >= 0) {
+                    //读完响应以复用连接
+                }
+            }
+            return status == 200;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
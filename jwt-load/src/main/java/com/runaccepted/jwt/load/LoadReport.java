@@ -0,0 +1,91 @@
+package com.runaccepted.jwt.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 压测结果：每个接口的延迟直方图、返回码分布，以及会话从计划到达到完成的耗时
+ *
+ * 会话耗时从计划的到达时间算起，包含排队等待，不受协调遗漏（coordinated omission）影响
+ */
+class LoadReport {
+
+    static final String SESSION = "session";
+
+    private static final double MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Map<String, Recorder> recorders = new LinkedHashMap<>();
+
+    //接口 HTTP状态/返回码 -> 次数
+    private final ConcurrentHashMap<String, LongAdder> codes = new ConcurrentHashMap<>();
+
+    private final LongAdder dropped = new LongAdder();
+
+    LoadReport(String... steps) {
+        for (String step : steps) {
+            recorders.put(step, new Recorder(3));
+        }
+        recorders.put(SESSION, new Recorder(3));
+    }
+
+    void record(String step, long nanos, String code) {
+        recorders.get(step).recordValue(nanos);
+        codes.computeIfAbsent(step + " " + code, key -> new LongAdder()).increment();
+    }
+
+    void session(long nanos) {
+        recorders.get(SESSION).recordValue(nanos);
+    }
+
+    void drop() {
+        dropped.increment();
+    }
+
+    /**
+     * 丢弃预热阶段的数据
+     */
+    void reset() {
+        recorders.values().forEach(Recorder::getIntervalHistogram);
+        codes.clear();
+        dropped.reset();
+    }
+
+    /**
+     * 输出汇总，并把每个接口的百分位分布写入 out/接口.hgrm（单位毫秒）
+     */
+    void print(PrintStream print, double seconds, Path out) throws IOException {
+        Files.createDirectories(out);
+        print.printf("%-10s %10s %10s %9s %9s %9s %9s %9s%n",
+                "", "count", "per sec", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<String, Recorder> entry : recorders.entrySet()) {
+            Histogram histogram = entry.getValue().getIntervalHistogram();
+            print.printf("%-10s %10d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    entry.getKey(), histogram.getTotalCount(), histogram.getTotalCount() / seconds,
+                    histogram.getValueAtPercentile(50) / MILLIS,
+                    histogram.getValueAtPercentile(90) / MILLIS,
+                    histogram.getValueAtPercentile(99) / MILLIS,
+                    histogram.getValueAtPercentile(99.9) / MILLIS,
+                    histogram.getMaxValue() / MILLIS);
+            try (PrintStream file = new PrintStream(Files.newOutputStream(out.resolve(entry.getKey() + ".hgrm")))) {
+                histogram.outputPercentileDistribution(file, MILLIS);
+            }
+        }
+        print.printf("dropped    %10d%n", dropped.sum());
+        print.println();
+        print.println("返回码（接口 HTTP状态/code）");
+        new TreeMap<>(codes).forEach((key, count) -> print.printf("  %-30s %10d%n", key, count.sum()));
+        print.println();
+        print.println("直方图：" + out.toAbsolutePath());
+    }
+}
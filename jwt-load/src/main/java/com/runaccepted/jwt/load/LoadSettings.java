@@ -0,0 +1,131 @@
+package com.runaccepted.jwt.load;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 压测参数，命令行中以 key=value 给出，未给出的使用默认值
+ *
+ * client.xxx=yyy、gateway.xxx=yyy 原样作为 --xxx=yyy 传给对应的应用，
+ * 例如 client.spring.profiles.active=reactive
+ */
+class LoadSettings {
+
+    private final Map<String, String> values = new LinkedHashMap<>();
+
+    private final List<String> clientArgs = new ArrayList<>();
+
+    private final List<String> gatewayArgs = new ArrayList<>();
+
+    static LoadSettings parse(String[] args) {
+        LoadSettings settings = new LoadSettings();
+        for (String arg : args) {
+            String option = arg.startsWith("--") ? arg.substring(2) : arg;
+            int index = option.indexOf('=');
+            if (index <= 0) {
+                throw new IllegalArgumentException("参数格式为 key=value：" + arg);
+            }
+            String key = option.substring(0, index);
+            String value = option.substring(index + 1);
+            if (key.startsWith("client.")) {
+                settings.clientArgs.add("--" + key.substring("client.".length()) + "=" + value);
+            } else if (key.startsWith("gateway.")) {
+                settings.gatewayArgs.add("--" + key.substring("gateway.".length()) + "=" + value);
+            } else {
+                settings.values.put(key, value);
+            }
+        }
+        return settings;
+    }
+
+    private String get(String key, String defaultValue) {
+        return values.getOrDefault(key, defaultValue);
+    }
+
+    private long getLong(String key, long defaultValue) {
+        return Long.parseLong(get(key, String.valueOf(defaultValue)));
+    }
+
+    //每秒到达的会话数（开放模型，与响应快慢无关）
+    double getRate() {
+        return Double.parseDouble(get("rate", "200"));
+    }
+
+    //poisson：指数分布的到达间隔；uniform：固定间隔
+    String getArrival() {
+        return get("arrival", "poisson");
+    }
+
+    //同时进行中的会话上限，超过时到达的会话计为dropped
+    int getUsers() {
+        return (int) getLong("users", 1000);
+    }
+
+    long getWarmupSeconds() {
+        return getLong("warmup", 10);
+    }
+
+    long getDurationSeconds() {
+        return getLong("duration", 30);
+    }
+
+    long getTimeoutMillis() {
+        return getLong("timeout", 5000);
+    }
+
+    //flow：登录 → getInfo → 刷新 → 登出；browse：启动时登录一次，之后每个会话只调用getInfo
+    String getScenario() {
+        return get("scenario", "flow");
+    }
+
+    //flow中每个会话调用getInfo的次数
+    int getReads() {
+        return (int) getLong("reads", 1);
+    }
+
+    String getUsername() {
+        return get("username", "admin");
+    }
+
+    String getPassword() {
+        return get("password", "123456");
+    }
+
+    //flow场景的账号数，由LoadTestRunner注册到客户端的 {username}1 ~ {username}N，默认与users相同
+    int getAccounts() {
+        return (int) getLong("accounts", getUsers());
+    }
+
+    //是否保留网关登录/刷新路由的限流；所有请求来自同一ip，按默认的限流配置大部分会被429拒绝
+    boolean isRateLimit() {
+        return Boolean.parseBoolean(get("ratelimit", "false"));
+    }
+
+    //已有的redis host:port，为空时启动本地redis
+    String getRedis() {
+        return get("redis", "");
+    }
+
+    //jwt-client.jar、jwt-gateway.jar所在目录
+    Path getApps(Path defaultApps) {
+        String apps = values.get("apps");
+        return apps == null ? defaultApps : Paths.get(apps);
+    }
+
+    //直方图（.hgrm）和应用事件日志的输出目录
+    Path getOut() {
+        return Paths.get(get("out", "load-report"));
+    }
+
+    List<String> getClientArgs() {
+        return clientArgs;
+    }
+
+    List<String> getGatewayArgs() {
+        return gatewayArgs;
+    }
+}
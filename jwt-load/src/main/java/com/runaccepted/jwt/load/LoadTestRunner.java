@@ -0,0 +1,152 @@
+package com.runaccepted.jwt.load;
+
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * java -jar jwt-load/target/load.jar [key=value ...]
+ *
+ * 在同一进程中启动本地redis、jwt-client和jwt-gateway（不使用nacos，网关路由直接指向客户端端口），
+ * 按开放模型经网关发送请求，输出吞吐、延迟直方图和返回码分布，参数见LoadSettings
+ *
+ * 例：java -jar jwt-load/target/load.jar rate=500 duration=60 scenario=browse
+ *
+ * 对比jwt-client的线程模型：以JDK 21及以上运行，相同的rate和scenario下分别加上与不加
+ * client.spring.profiles.active=virtual，比较两次的吞吐和延迟直方图
+ */
+public class LoadTestRunner {
+
+    public static void main(String[] args) throws Exception {
+        LoadSettings settings = LoadSettings.parse(args);
+        Path apps = settings.getApps(Paths.get(LoadTestRunner.class.getProtectionDomain()
+                .getCodeSource().getLocation().toURI()).getParent().resolve("apps"));
+        Path out = settings.getOut();
+
+        RedisServer redis = null;
+        String redisHost = "127.0.0.1";
+        int redisPort;
+        if (settings.getRedis().isEmpty()) {
+            redisPort = freePort();
+            redis = RedisServer.builder().port(redisPort).setting("save \"\"").setting("appendonly no").build();
+            redis.start();
+        } else {
+            String[] address = settings.getRedis().split(":");
+            redisHost = address[0];
+            redisPort = address.length > 1 ? Integer.parseInt(address[1]) : 6379;
+        }
+
+        int status = 1;
+        try {
+            List<String> common = Arrays.asList(
+                    "--spring.cloud.nacos.discovery.enabled=false",
+                    "--spring.redis.host=" + redisHost,
+                    "--spring.redis.port=" + redisPort,
+                    "--spring.jmx.enabled=false",
+                    "--logging.level.root=WARN",
+                    "--logging.level.com.runaccepted=WARN");
+
+            EmbeddedApp client = new EmbeddedApp("jwt-client", apps.resolve("jwt-client.jar"), freePort());
+            List<String> clientArgs = new ArrayList<>(common);
+            clientArgs.add("--server.port=" + client.getPort());
+            clientArgs.add("--jwt.event.file=" + out.resolve("client-events.log").toAbsolutePath());
+            //压测账号以同名bean替换客户端的LoginAccounts，只在这里注册
+            clientArgs.add("--spring.main.sources=" + writeAccounts(settings, out.resolve("accounts.xml")).toUri());
+            clientArgs.addAll(settings.getClientArgs());
+            client.start(clientArgs, 120_000);
+
+            EmbeddedApp gateway = new EmbeddedApp("jwt-gateway", apps.resolve("jwt-gateway.jar"), freePort());
+            List<String> gatewayArgs = new ArrayList<>(common);
+            gatewayArgs.add("--server.port=" + gateway.getPort());
+            gatewayArgs.add("--jwt.event.file=" + out.resolve("gateway-events.log").toAbsolutePath());
+            //路由整体替换，列表配置不与application.yml合并
+            gatewayArgs.add("--spring.cloud.gateway.routes[0].id=jwt-route");
+            gatewayArgs.add("--spring.cloud.gateway.routes[0].uri=http://127.0.0.1:" + client.getPort());
+            gatewayArgs.add("--spring.cloud.gateway.routes[0].predicates[0]=Path=/jwt-client/**");
+            if (!settings.isRateLimit()) {
+                gatewayArgs.add("--jwt.ratelimit.enabled=false");
+            }
+            gatewayArgs.addAll(settings.getGatewayArgs());
+            gateway.start(gatewayArgs, 120_000);
+
+            System.out.printf("redis %s:%d  client :%d  gateway :%d%n", redisHost, redisPort, client.getPort(), gateway.getPort());
+            System.out.printf("scenario=%s rate=%.0f/s arrival=%s users=%d accounts=%d ratelimit=%s warmup=%ds duration=%ds%n",
+                    settings.getScenario(), settings.getRate(), settings.getArrival(), settings.getUsers(),
+                    settings.getAccounts(), settings.isRateLimit(), settings.getWarmupSeconds(), settings.getDurationSeconds());
+
+            LoadReport report = new LoadReport(Workload.LOGIN, Workload.GET_INFO, Workload.REFRESH, Workload.LOGOUT);
+            Workload workload = new Workload(settings, "http://127.0.0.1:" + gateway.getPort(), report);
+            workload.prepare();
+            if (settings.getWarmupSeconds() > 0) {
+                workload.run(settings.getWarmupSeconds());
+                report.reset();
+            }
+            double seconds = workload.run(settings.getDurationSeconds());
+            System.out.println();
+            report.print(System.out, seconds, out);
+            status = 0;
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (redis != null) {
+                redis.stop();
+            }
+            //两个应用的web服务器线程不会自行结束
+            System.exit(status);
+        }
+    }
+
+    /**
+     * 生成jwt-client的LoginAccounts bean定义：在配置的账号之外加上 {username}1 ~ {username}accounts，密码相同；
+     * spring cloud的bootstrap上下文同样会加载它，lazy-init使其只在注入它的应用上下文中创建
+     */
+    private static Path writeAccounts(LoadSettings settings, Path file) throws IOException {
+        StringBuilder xml = new StringBuilder()
+                .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<beans xmlns=\"http://www.springframework.org/schema/beans\"\n")
+                .append("       xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n")
+                .append("       xsi:schemaLocation=\"http://www.springframework.org/schema/beans")
+                .append(" http://www.springframework.org/schema/beans/spring-beans.xsd\">\n")
+                .append("    <bean id=\"loginAccounts\" class=\"com.runaccepted.jwt.client.utils.LoginAccounts\" lazy-init=\"true\">\n")
+                .append("        <property name=\"accounts\">\n")
+                .append("            <list>\n");
+        String username = escape(settings.getUsername());
+        String password = escape(settings.getPassword());
+        for (int i = 1; i <= settings.getAccounts(); i++) {
+            appendAccount(xml, "load-" + i, username + i, password);
+        }
+        xml.append("            </list>\n")
+                .append("        </property>\n")
+                .append("    </bean>\n")
+                .append("</beans>\n");
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.write(file, xml.toString().getBytes(StandardCharsets.UTF_8));
+        return file.toAbsolutePath();
+    }
+
+    private static void appendAccount(StringBuilder xml, String id, String username, String password) {
+        xml.append("                <bean class=\"com.runaccepted.jwt.api.entity.Admin\">")
+                .append("<property name=\"id\" value=\"").append(id).append("\"/>")
+                .append("<property name=\"username\" value=\"").append(username).append("\"/>")
+                .append("<property name=\"password\" value=\"").append(password).append("\"/>")
+                .append("</bean>\n");
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.runaccepted.jwt.load;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.ByteBufMono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.HttpClientResponse;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 开放模型的负载：会话按设定的速率到达，到达时间与之前的请求是否完成无关
+ *
+ * flow场景中每个会话取一个空闲的账号（{username}1 ~ {username}accounts），结束后归还，
+ * 重叠的会话各自登录、读取、刷新和登出；没有空闲账号时该次到达计为dropped。
+ * 会话未能登出（超时、出错）时账号仍在免登录时间内，之后使用它的会话登录得到20001（已经登录）
+ */
+class Workload {
+
+    static final String LOGIN = "login";
+    static final String GET_INFO = "getInfo";
+    static final String REFRESH = "refresh";
+    static final String LOGOUT = "logout";
+
+    private static final Pattern CODE = Pattern.compile("\"code\"\\s*:\\s*(\\d+)");
+
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+
+    private final LoadSettings settings;
+
+    private final LoadReport report;
+
+    private final HttpClient http;
+
+    private final String credentials;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    //flow场景空闲账号的登录请求体
+    private final Queue<String> accounts = new ConcurrentLinkedQueue<>();
+
+    //browse场景共用的token
+    private volatile String token;
+
+    Workload(LoadSettings settings, String baseUrl, LoadReport report) {
+        this.settings = settings;
+        this.report = report;
+        this.http = HttpClient.create(ConnectionProvider.fixed("load", settings.getUsers(), settings.getTimeoutMillis()))
+                .baseUrl(baseUrl);
+        this.credentials = credentials(settings.getUsername());
+        for (int i = 1; i <= settings.getAccounts(); i++) {
+            accounts.add(credentials(settings.getUsername() + i));
+        }
+    }
+
+    private String credentials(String username) {
+        return "{\"username\":\"" + username + "\",\"password\":\"" + settings.getPassword() + "\"}";
+    }
+
+    /**
+     * browse场景在开始前登录一次
+     */
+    void prepare() {
+        if ("browse".equals(settings.getScenario())) {
+            Response response = call(LOGIN, "/jwt-client/login", null, credentials).block();
+            token = response == null ? null : response.token();
+            if (token == null) {
+                //使用已有的redis时，之前的会话仍在免登录时间内也会登录失败
+                throw new IllegalStateException("登录失败 " + response);
+            }
+        }
+    }
+
+    /**
+     * 按到达速率产生会话，持续seconds秒，之后等待进行中的会话完成
+     *
+     * @return 从开始到全部完成的秒数
+     */
+    double run(long seconds) {
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long next = start;
+        while (next < end) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            arrive(next);
+            next += interval();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.getTimeoutMillis() * 4);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    private long interval() {
+        double mean = 1e9 / settings.getRate();
+        if ("uniform".equals(settings.getArrival())) {
+            return (long) mean;
+        }
+        return (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * mean);
+    }
+
+    private void arrive(long scheduled) {
+        if (inFlight.incrementAndGet() > settings.getUsers()) {
+            inFlight.decrementAndGet();
+            report.drop();
+            return;
+        }
+        if ("browse".equals(settings.getScenario())) {
+            call(GET_INFO, "/jwt-client/getInfo", token, null).doFinally(signal -> {
+                inFlight.decrementAndGet();
+                report.session(System.nanoTime() - scheduled);
+            }).subscribe();
+            return;
+        }
+        String account = accounts.poll();
+        if (account == null) {
+            inFlight.decrementAndGet();
+            report.drop();
+            return;
+        }
+        flow(account).doFinally(signal -> {
+            accounts.add(account);
+            inFlight.decrementAndGet();
+            report.session(System.nanoTime() - scheduled);
+        }).subscribe();
+    }
+
+    /**
+     * 登录 → getInfo × reads → 刷新 → 登出，登录失败时会话结束
+     */
+    private Mono<Response> flow(String account) {
+        return call(LOGIN, "/jwt-client/login", null, account).flatMap(login -> {
+            String token = login.token();
+            if (token == null) {
+                return Mono.empty();
+            }
+            return Flux.range(0, settings.getReads())
+                    .concatMap(i -> call(GET_INFO, "/jwt-client/getInfo", token, null))
+                    .then(call(REFRESH, "/jwt-client/token/refresh", token, null))
+                    .flatMap(refresh -> call(LOGOUT, "/jwt-client/logout",
+                            refresh.token() == null ? token : refresh.token(), null));
+        });
+    }
+
+    /**
+     * 发送一个请求并记录耗时和返回码，请求失败（超时、连接错误）也作为结果返回
+     */
+    private Mono<Response> call(String step, String uri, String token, String body) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            HttpClient client = token == null ? http : http.headers(headers -> headers.set(HttpHeaderNames.AUTHORIZATION, token));
+            Mono<Response> response = body == null
+                    ? client.get().uri(uri).responseSingle(Workload::read)
+                    : client.headers(headers -> headers.set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON))
+                    .post().uri(uri)
+                    .send(ByteBufFlux.fromString(Mono.just(body)))
+                    .responseSingle(Workload::read);
+            return response
+                    .timeout(Duration.ofMillis(settings.getTimeoutMillis()))
+                    .onErrorResume(e -> Mono.just(new Response(0, e.getClass().getSimpleName())))
+                    .doOnNext(result -> report.record(step, System.nanoTime() - start, result.code()));
+        });
+    }
+
+    private static Mono<Response> read(HttpClientResponse response, ByteBufMono content) {
+        int status = response.status().code();
+        return content.asString(StandardCharsets.UTF_8)
+                .defaultIfEmpty("")
+                .map(text -> new Response(status, text));
+    }
+
+    /**
+     * 响应的HTTP状态和内容，status为0时body为异常类名
+     */
+    static final class Response {
+
+        private final int status;
+
+        private final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        String code() {
+            if (status == 0) {
+                return body;
+            }
+            Matcher matcher = CODE.matcher(body);
+            return status + "/" + (matcher.find() ? matcher.group(1) : "-");
+        }
+
+        String token() {
+            Matcher matcher = TOKEN.matcher(body);
+            return status == 200 && matcher.find() ? matcher.group(1) : null;
+        }
+
+        @Override
+        public String toString() {
+            return status + " " + body;
+        }
+    }
+}